@@ -13,7 +13,7 @@ import ru.practicum.event.dto.EventFullDto;
 import ru.practicum.event.feign.EventServiceClient;
 import ru.practicum.exception.NotFoundException;
 import ru.practicum.user.dto.UserShortDto;
-import ru.practicum.user.feign.UserServiceClient;
+import ru.practicum.user.cache.UserCache;
 
 
 import java.util.List;
@@ -26,7 +26,7 @@ public class CommentServiceImpl implements CommentService {
 
     private final CommentRepository commentRepository;
     private final EventServiceClient eventServiceClient;
-    private final UserServiceClient userServiceClient;
+    private final UserCache userCache;
 
     @Override
     public List<CommentDto> getComments(Long eventId) {
@@ -145,7 +145,7 @@ public class CommentServiceImpl implements CommentService {
 
     private UserShortDto getUserById(Long userId) {
         try {
-            return userServiceClient.getUserById(userId).getBody();
+            return userCache.get(userId);
         } catch (FeignException.NotFound ex) {
             throw new NotFoundException(
                     String.format("Пользователь с id %d не найден", userId)
@@ -0,0 +1,28 @@
+package ru.practicum.event.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import ru.practicum.event.service.ConfirmedRequestsCache;
+import ru.practicum.request.dto.ConfirmedCountDto;
+
+import java.util.List;
+
+/**
+ * Принимает от request-service изменения чисел подтверждённых заявок.
+ */
+@RestController
+@RequestMapping("/internal/events/confirmed-requests")
+@RequiredArgsConstructor
+@Slf4j
+public class ConfirmedRequestsController {
+    private final ConfirmedRequestsCache confirmedRequestsCache;
+
+    @PutMapping
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void update(@RequestBody List<ConfirmedCountDto> changes) {
+        log.debug("Изменения чисел подтверждённых заявок: {}", changes);
+        confirmedRequestsCache.update(changes);
+    }
+}
@@ -5,7 +5,6 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.*;
-import org.hibernate.annotations.Formula;
 import ru.practicum.category.model.Category;
 import ru.practicum.event.dto.State;
 import ru.practicum.event.validate.TimeAtLeastTwoHours;
@@ -45,8 +44,9 @@ public class Event {
     @Column(name = "participant_limit")
     //Ограничение на количество участников. Значение 0 - означает отсутствие ограничения
     private int participantLimit; //
-    @Formula("(SELECT COUNT(*) FROM views v WHERE v.event_id = id)")
-    private int views; //просмотры события*/
+    // Счётчик просмотров меняет только ViewCounter пакетными UPDATE, сохранение события его не перезаписывает
+    @Column(name = "views", insertable = false, updatable = false)
+    private long views; //просмотры события
     @Column(name = "request_moderation")
     @Builder.Default
     private Boolean requestModeration = true; //Нужна ли пре-модерация заявок на участие
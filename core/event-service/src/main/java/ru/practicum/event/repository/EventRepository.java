@@ -10,7 +10,8 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface EventRepository extends JpaRepository<Event, Long>, QuerydslPredicateExecutor<Event> {
+public interface EventRepository extends JpaRepository<Event, Long>, QuerydslPredicateExecutor<Event>,
+        EventViewsRepository {
     Optional<Event> findByIdAndUserId(Long eventId, Long userId);
     List<Event> findAllByIdIn(List<Long> eventIds);
 }
@@ -0,0 +1,12 @@
+package ru.practicum.event.repository;
+
+import java.util.Map;
+
+public interface EventViewsRepository {
+    /**
+     * Прибавляет накопленные просмотры к счётчикам событий одним JDBC batch.
+     *
+     * @param increments ID события → число новых просмотров
+     */
+    void addViews(Map<Long, Long> increments);
+}
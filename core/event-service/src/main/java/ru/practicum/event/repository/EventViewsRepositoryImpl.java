@@ -0,0 +1,30 @@
+package ru.practicum.event.repository;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class EventViewsRepositoryImpl implements EventViewsRepository {
+    static final String ADD_VIEWS_SQL = "UPDATE events SET views = views + ? WHERE id = ?";
+
+    final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void addViews(Map<Long, Long> increments) {
+        if (increments.isEmpty()) {
+            return;
+        }
+        // Одинаковый порядок строк во всех пачках исключает взаимные блокировки параллельных сбросов
+        List<Object[]> args = increments.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .map(e -> new Object[]{e.getValue(), e.getKey()})
+                .toList();
+        jdbcTemplate.batchUpdate(ADD_VIEWS_SQL, args);
+    }
+}
@@ -0,0 +1,16 @@
+package ru.practicum.event.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface ViewBatchRepository {
+    /**
+     * Вставляет просмотры одним JDBC batch, пропуская пары (событие, ip), которые уже есть в таблице.
+     *
+     * @return для каждого просмотра: true, если он записан, false — если такой уже был
+     */
+    boolean[] insertIgnoringDuplicates(List<NewView> views);
+
+    record NewView(long eventId, String ip, LocalDateTime viewTime) {
+    }
+}
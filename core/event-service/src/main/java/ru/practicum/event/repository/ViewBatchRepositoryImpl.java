@@ -0,0 +1,39 @@
+package ru.practicum.event.repository;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ViewBatchRepositoryImpl implements ViewBatchRepository {
+    // Уникальность пары обеспечивает uq_views: повтор не вставляется и не прерывает пачку
+    static final String INSERT_SQL = """
+            INSERT INTO views (event_id, ip, view_time)
+            VALUES (?, ?, ?)
+            ON CONFLICT (event_id, ip) DO NOTHING
+            """;
+
+    final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public boolean[] insertIgnoringDuplicates(List<NewView> views) {
+        boolean[] inserted = new boolean[views.size()];
+        if (views.isEmpty()) {
+            return inserted;
+        }
+        List<Object[]> args = views.stream()
+                .map(v -> new Object[]{v.eventId(), v.ip(), Timestamp.valueOf(v.viewTime())})
+                .toList();
+        int[] counts = jdbcTemplate.batchUpdate(INSERT_SQL, args);
+        for (int i = 0; i < counts.length; i++) {
+            // Драйвер может не сообщить число строк (SUCCESS_NO_INFO): такой просмотр не засчитывается в счётчик
+            inserted[i] = counts[i] > 0;
+        }
+        return inserted;
+    }
+}
@@ -0,0 +1,104 @@
+package ru.practicum.event.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.practicum.cache.GenerationalMap;
+import ru.practicum.request.dto.ConfirmedCountDto;
+import ru.practicum.request.feign.RequestServiceClient;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Кеш чисел подтверждённых заявок на события.
+ * <p>
+ * Request-service присылает новое число при каждом его изменении, поэтому для событий из кеша
+ * запрос в request-service не нужен; отсутствующие числа запрашиваются одним вызовом на весь список.
+ * Каждое число хранится с версией из request-service, и устаревшее значение не заменяет более новое,
+ * в каком бы порядке ни пришли ответ на запрос и уведомления. Запись живёт не дольше ttlMs на случай
+ * потерянного уведомления; ответ на запрос после истечения срока заменяет запись независимо от версии,
+ * чтобы неверная версия не закрепила значение в кеше навсегда. Размер ограничен {@link GenerationalMap}
+ * с поколениями по половине maxSize.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ConfirmedRequestsCache {
+    final RequestServiceClient requestServiceClient;
+    final ConfirmedRequestsCacheProperties properties;
+
+    GenerationalMap<Long, Entry> entries;
+
+    @PostConstruct
+    public void init() {
+        entries = new GenerationalMap<>(properties.getMaxSize() / 2);
+    }
+
+    public int get(long eventId) {
+        return get(List.of(eventId)).getOrDefault(eventId, 0);
+    }
+
+    /**
+     * @return ID события → число подтверждённых заявок для всех переданных событий
+     */
+    public Map<Long, Integer> get(List<Long> eventIds) {
+        Map<Long, Integer> counts = new HashMap<>();
+        List<Long> misses = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (Long eventId : eventIds) {
+            Entry entry = entries.get(eventId);
+            if (entry != null && entry.expiresAt() > now) {
+                counts.put(eventId, entry.confirmed());
+            } else {
+                misses.add(eventId);
+            }
+        }
+        if (!misses.isEmpty()) {
+            log.debug("Запрос в requestService чисел подтверждённых заявок для {} событий", misses.size());
+            for (ConfirmedCountDto count : requestServiceClient.getConfirmedCounts(misses)) {
+                counts.put(count.getEventId(), store(count, true).confirmed());
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Принимает изменения от request-service.
+     */
+    public void update(List<ConfirmedCountDto> changes) {
+        changes.forEach(change -> store(change, false));
+    }
+
+    /**
+     * @param refetched значение получено запросом в request-service и заменяет истёкшую запись независимо от версии
+     * @return значение, оставшееся в кеше: переданное или более новое
+     */
+    private Entry store(ConfirmedCountDto count, boolean refetched) {
+        long now = System.currentTimeMillis();
+        Entry entry = new Entry(count.getConfirmed(), count.getVersion(), now + properties.getTtlMs());
+        return entries.merge(count.getEventId(), entry, (current, fresh) -> fresh.merge(current, refetched, now));
+    }
+
+    private record Entry(int confirmed, long version, long expiresAt) {
+        Entry merge(Entry current, boolean refetched, long now) {
+            return refetched && current.expiresAt() <= now ? this : newer(current);
+        }
+
+        /**
+         * Из двух значений выбирает более новое; при равных версиях — полученное позже, чтобы продлить срок.
+         */
+        Entry newer(Entry other) {
+            if (version != other.version) {
+                return version > other.version ? this : other;
+            }
+            return expiresAt >= other.expiresAt ? this : other;
+        }
+    }
+}
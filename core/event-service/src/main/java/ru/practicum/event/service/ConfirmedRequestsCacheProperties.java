@@ -0,0 +1,20 @@
+package ru.practicum.event.service;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "confirmed-requests.cache")
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Getter
+@Setter
+public class ConfirmedRequestsCacheProperties {
+    // Сколько доверять числу без подтверждения от request-service; страхует от потерянных изменений
+    long ttlMs = 60_000;
+    // Сколько событий держать в памяти
+    int maxSize = 50_000;
+}
@@ -0,0 +1,22 @@
+package ru.practicum.event.service;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "enrichment")
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Getter
+@Setter
+public class EnrichmentProperties {
+    // Сколько ждать числа подтверждённых заявок от request-service, после этого в ответе 0
+    long requestsTimeoutMs = 1_000;
+    // Сколько ждать инициаторов от user-service, после этого initiator не заполняется
+    long usersTimeoutMs = 1_000;
+    // Сколько ждать рейтингов от analyzer, после этого rating не заполняется
+    long ratingsTimeoutMs = 500;
+}
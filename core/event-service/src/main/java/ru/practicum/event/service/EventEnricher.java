@@ -0,0 +1,133 @@
+package ru.practicum.event.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.practicum.client.AnalyzerClient;
+import ru.practicum.event.model.Event;
+import ru.practicum.evm.stats.proto.RecommendedEventProto;
+import ru.practicum.user.dto.UserShortDto;
+import ru.practicum.user.feign.UserServiceClient;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Дополняет список событий данными других сервисов: числом подтверждённых заявок, инициаторами и рейтингами.
+ * <p>
+ * Вызовы выполняются одновременно на виртуальных потоках, поэтому ответ ждёт самый медленный сервис,
+ * а не сумму задержек. У каждого вызова свой таймаут; если сервис не ответил или ответил ошибкой,
+ * ответ собирается без его данных, а не завершается ошибкой. Отсутствие чисел подтверждённых заявок
+ * отличимо от нуля: фильтр по свободным местам без них не работает, см. {@link Enrichment#hasConfirmedRequests()}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class EventEnricher {
+    final ConfirmedRequestsCache confirmedRequestsCache;
+    final UserServiceClient userServiceClient;
+    final AnalyzerClient analyzerClient;
+    final EnrichmentProperties properties;
+    final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * @param withRatings запросить рейтинги событий у analyzer
+     */
+    public Enrichment enrich(List<Event> events, boolean withRatings) {
+        if (events.isEmpty()) {
+            return Enrichment.EMPTY;
+        }
+        List<Long> eventIds = events.stream().map(Event::getId).toList();
+        List<Long> userIds = events.stream().map(Event::getUserId).distinct().toList();
+
+        CompletableFuture<Map<Long, Integer>> confirmed = call("request-service",
+                () -> confirmedRequestsCache.get(eventIds), properties.getRequestsTimeoutMs());
+        CompletableFuture<Map<Long, UserShortDto>> initiators = call("user-service",
+                () -> toUserMap(userServiceClient.getUsersByIds(userIds).getBody()), properties.getUsersTimeoutMs());
+        CompletableFuture<Map<Long, Double>> ratings = withRatings
+                ? call("analyzer", () -> toRatingMap(eventIds), properties.getRatingsTimeoutMs())
+                : CompletableFuture.completedFuture(Collections.emptyMap());
+
+        return new Enrichment(confirmed.join(), orEmpty(initiators.join()), orEmpty(ratings.join()));
+    }
+
+    private static <T> Map<Long, T> orEmpty(Map<Long, T> values) {
+        return values != null ? values : Collections.emptyMap();
+    }
+
+    // Завершается null, если сервис не ответил или ответил ошибкой
+    private <T> CompletableFuture<Map<Long, T>> call(String service, Supplier<Map<Long, T>> call, long timeoutMs) {
+        return CompletableFuture.supplyAsync(call, executor)
+                .orTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .exceptionally(e -> {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    if (cause instanceof TimeoutException) {
+                        log.warn("{} не ответил за {} мс, ответ будет без его данных", service, timeoutMs);
+                    } else {
+                        log.warn("Ошибка запроса в {}, ответ будет без его данных: {}", service, cause.getMessage());
+                    }
+                    return null;
+                });
+    }
+
+    private static Map<Long, UserShortDto> toUserMap(List<UserShortDto> users) {
+        if (users == null) {
+            return Collections.emptyMap();
+        }
+        return users.stream().collect(Collectors.toMap(UserShortDto::getId, Function.identity(), (a, b) -> a));
+    }
+
+    private Map<Long, Double> toRatingMap(List<Long> eventIds) {
+        return analyzerClient.getInteractionsCount(eventIds)
+                .collect(Collectors.toMap(RecommendedEventProto::getEventId, RecommendedEventProto::getScore,
+                        (a, b) -> a));
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdown();
+    }
+
+    /**
+     * Данные для дополнения событий; отсутствующие значения — от сервисов, которые не ответили.
+     * confirmedRequests равен null, если request-service не ответил.
+     */
+    public record Enrichment(Map<Long, Integer> confirmedRequests,
+                             Map<Long, UserShortDto> initiators,
+                             Map<Long, Double> ratings) {
+        static final Enrichment EMPTY = new Enrichment(Collections.emptyMap(), Collections.emptyMap(),
+                Collections.emptyMap());
+
+        public boolean hasConfirmedRequests() {
+            return confirmedRequests != null;
+        }
+
+        /**
+         * @return число подтверждённых заявок; 0, если request-service не ответил, поэтому годится только для отображения
+         */
+        public int confirmedRequests(long eventId) {
+            return confirmedRequests != null ? confirmedRequests.getOrDefault(eventId, 0) : 0;
+        }
+
+        public UserShortDto initiator(long userId) {
+            return initiators.get(userId);
+        }
+
+        public Double rating(long eventId) {
+            return ratings.get(eventId);
+        }
+    }
+}
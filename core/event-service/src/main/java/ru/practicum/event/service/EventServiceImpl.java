@@ -29,23 +29,21 @@ import ru.practicum.event.model.QEvent;
 import ru.practicum.event.dto.State;
 import ru.practicum.event.dto.StateAction;
 import ru.practicum.event.repository.EventRepository;
+import ru.practicum.event.service.EventEnricher.Enrichment;
 import ru.practicum.evm.stats.proto.ActionTypeProto;
 import ru.practicum.evm.stats.proto.RecommendedEventProto;
 import ru.practicum.exception.ConflictStateException;
 import ru.practicum.exception.ConflictTimeException;
 import ru.practicum.exception.NotFoundException;
+import ru.practicum.exception.ServiceUnavailableException;
 import ru.practicum.exception.ValidationException;
 import ru.practicum.request.feign.RequestServiceClient;
 import ru.practicum.user.dto.UserShortDto;
-import ru.practicum.user.feign.UserServiceClient;
+import ru.practicum.user.cache.UserCache;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.function.Function;
 import java.util.stream.Collectors;
 
 
@@ -62,10 +60,12 @@ public class EventServiceImpl implements EventService {
     EventMapper mp;
     LocationMapper lmp;
     QEvent event = QEvent.event;
-    UserServiceClient userServiceClient;
+    UserCache userCache;
     RequestServiceClient requestServiceClient;
+    ConfirmedRequestsCache confirmedRequestsCache;
     CollectorClient collectorClient;
     AnalyzerClient analyzerClient;
+    EventEnricher enricher;
 
     @Transactional
     @Override
@@ -83,15 +83,7 @@ public class EventServiceImpl implements EventService {
         Predicate predicate = event.userId.eq(prm.getUserId());
         PageRequest pageRequest = PageRequest.of(prm.getFrom(), prm.getSize());
         List<Event> events = eventRepository.findAll(predicate, pageRequest).getContent();
-
-
-        //добавление подтвержденных просмотров
-        Map<Long, Integer> confirmedRequestsMap = getConfirmedRequestMap(events);
-        List<EventShortDto> dtos = toEventShortDtoAddUserList(events);
-        dtos.forEach(dto ->
-                dto.setConfirmedRequests(confirmedRequestsMap.getOrDefault(dto.getId(), 0)));
-
-        return dtos;
+        return toEventShortDtos(events, enricher.enrich(events, false));
     }
 
     @Override
@@ -105,8 +97,7 @@ public class EventServiceImpl implements EventService {
         log.info("Получение события с id {}  для пользователя с id {}", prm.getEventId(), prm.getUserId());
 
         //добавление подтвержденных просмотров
-        int confirmedRequests = requestServiceClient.getConfirmedRequest(List.of(ev.getId()))
-                .getOrDefault(ev.getId(), 0);
+        int confirmedRequests = confirmedRequestsCache.get(ev.getId());
 
         EventFullDto dto = addUserShortDtoToFullDto(ev, prm.getUserId());
         dto.setConfirmedRequests(confirmedRequests);
@@ -140,12 +131,16 @@ public class EventServiceImpl implements EventService {
                 ? eventRepository.findAll(pageRequest).getContent()
                 : eventRepository.findAll(predicate, pageRequest).getContent();
 
-        Map<Long, Integer> confirmedRequestsMap = getConfirmedRequestMap(events);
-        List<EventFullDto> dtos = toEventFullDtoAddUserList(events);
-        dtos.forEach(dto ->
-                dto.setConfirmedRequests(confirmedRequestsMap.getOrDefault(dto.getId(), 0)));
-
-        return dtos;
+        Enrichment enrichment = enricher.enrich(events, true);
+        return events.stream()
+                .map(event -> {
+                    EventFullDto dto = mp.toEventFullDto(event);
+                    dto.setInitiator(enrichment.initiator(event.getUserId()));
+                    dto.setConfirmedRequests(enrichment.confirmedRequests(event.getId()));
+                    dto.setRating(enrichment.rating(event.getId()));
+                    return dto;
+                })
+                .collect(Collectors.toList());
     }
 
     @Override
@@ -172,8 +167,7 @@ public class EventServiceImpl implements EventService {
         Event savedEvent = eventRepository.save(ev);
 
         log.info("Запрос в requestService, добавление количества запросов");
-        int confirmedRequests = requestServiceClient.getConfirmedRequest(List.of(savedEvent.getId()))
-                .getOrDefault(ev.getId(), 0);
+        int confirmedRequests = confirmedRequestsCache.get(savedEvent.getId());
         EventFullDto eventFullDto = addUserShortDtoToFullDto(savedEvent, savedEvent.getUserId());
         eventFullDto.setConfirmedRequests(confirmedRequests);
         return eventFullDto;
@@ -203,15 +197,13 @@ public class EventServiceImpl implements EventService {
         }
         mp.updateFromUser(rq, ev);
         Event savedEvent = eventRepository.save(ev);
-        int confirmedRequests = requestServiceClient.getConfirmedRequest(List.of(savedEvent.getId()))
-                .getOrDefault(ev.getId(), 0);
+        int confirmedRequests = confirmedRequestsCache.get(savedEvent.getId());
         EventFullDto eventFullDto = addUserShortDtoToFullDto(savedEvent, savedEvent.getUserId());
         eventFullDto.setConfirmedRequests(confirmedRequests);
         return eventFullDto;
     }
 
     @Override
-    @Transactional
     public List<EventShortDto> getPublicEvents(EventDtoGetParam prm, HttpServletRequest rqt) {
         Predicate predicate = event.state.eq(State.PUBLISHED);
         if (prm.getText() != null && !prm.getText().isEmpty()) {
@@ -243,39 +235,35 @@ public class EventServiceImpl implements EventService {
         PageRequest pageRequest = PageRequest.of(prm.getFrom(), prm.getSize(), sort);
         List<Event> events = eventRepository.findAll(predicate, pageRequest).getContent();
 
-        List<Long> eventIds = events.stream().map(Event::getId).collect(Collectors.toList());
-        Map<Long, Integer> confirmedRequestsMap = requestServiceClient.getConfirmedRequest(eventIds);
+        // Инициаторы запрашиваются вместе с заявками для всей страницы, до фильтра по свободным местам
+        Enrichment enrichment = enricher.enrich(events, false);
         if (prm.getOnlyAvailable() != null && prm.getOnlyAvailable() && !events.isEmpty()) {
+            if (!enrichment.hasConfirmedRequests()
+                    && events.stream().anyMatch(event -> event.getParticipantLimit() != 0)) {
+                // Без чисел заявок заполненное событие не отличить от свободного
+                throw new ServiceUnavailableException("RequestService недоступен");
+            }
             events = events.stream()
-                    .filter(event -> {
-                        int confirmed = confirmedRequestsMap.getOrDefault(event.getId(), 0);
-                        return event.getParticipantLimit() == 0 ||
-                                event.getParticipantLimit() > confirmed;
-                    })
+                    .filter(event -> event.getParticipantLimit() == 0 ||
+                            event.getParticipantLimit() > enrichment.confirmedRequests(event.getId()))
                     .collect(Collectors.toList());
         }
 
-//        if (!events.isEmpty()) {
-//            viewService.saveViews(events, rqt);
-//        }
-
-        List<EventShortDto> dtos = toEventShortDtoAddUserList(events);
-        dtos.forEach(dto ->
-                dto.setConfirmedRequests(confirmedRequestsMap.getOrDefault(dto.getId(), 0)));
+        if (!events.isEmpty()) {
+            viewService.saveViews(events, rqt);
+        }
 
-        return dtos;
+        return toEventShortDtos(events, enrichment);
     }
 
     @Override
-    @Transactional
     public EventFullDto getPublicEventById(Long id, Long userId, HttpServletRequest rqt) {
         Predicate predicate = event.state.eq(State.PUBLISHED).and(event.id.eq(id));
         Event ev = eventRepository.findOne(predicate)
                 .orElseThrow(() -> new NotFoundException(
                         String.format("Событие с id %d не найдено.", id)));
         viewService.saveView(ev, rqt);
-        int confirmedRequests = requestServiceClient.getConfirmedRequest(List.of(ev.getId()))
-                .getOrDefault(ev.getId(), 0);
+        int confirmedRequests = confirmedRequestsCache.get(ev.getId());
         EventFullDto eventFullDto = addUserShortDtoToFullDto(ev, ev.getUserId());
         eventFullDto.setConfirmedRequests(confirmedRequests);
 
@@ -352,66 +340,28 @@ public class EventServiceImpl implements EventService {
     }
 
     private UserShortDto getUserById(Long userId) {
-        UserShortDto user = userServiceClient.getUserById(userId).getBody();
+        UserShortDto user = userCache.get(userId);
         if (user == null) {
             throw new NotFoundException("Пользователь не найден с id: " + userId);
         }
         return user;
     }
 
-    public List<EventFullDto> toEventFullDtoAddUserList(List<Event> events) {
-        Map<Long, UserShortDto> userMap = getUserMap(events);
-        return events.stream()
-                .map(event -> {
-                    EventFullDto dto = mp.toEventFullDto(event);
-                    dto.setInitiator(userMap.get(event.getUserId()));
-                    return dto;
-                })
-                .collect(Collectors.toList());
-    }
-
-    public List<EventShortDto> toEventShortDtoAddUserList(List<Event> events) {
-        Map<Long, UserShortDto> userMap = getUserMap(events);
+    private List<EventShortDto> toEventShortDtos(List<Event> events, Enrichment enrichment) {
         return events.stream()
                 .map(event -> {
                     EventShortDto dto = mp.toEventShortDto(event);
-                    dto.setInitiator(userMap.get(event.getUserId()));
+                    dto.setInitiator(enrichment.initiator(event.getUserId()));
+                    dto.setConfirmedRequests(enrichment.confirmedRequests(event.getId()));
                     return dto;
                 })
                 .collect(Collectors.toList());
     }
 
-    private Map<Long, UserShortDto> getUserMap(List<Event> events) {
-        Set<Long> userIds = events.stream()
-                .map(Event::getUserId)
-                .collect(Collectors.toSet());
-
-        List<UserShortDto> users = userServiceClient.getUsersByIds(new ArrayList<>(userIds)).getBody();
-        if (users == null) {
-            return Collections.emptyMap(); // Защита от NPE
-        }
-
-        return users.stream()
-                .collect(Collectors.toMap(UserShortDto::getId, Function.identity()));
-    }
-
     private EventFullDto addUserShortDtoToFullDto(Event event, Long userId) {
         EventFullDto dto = mp.toEventFullDto(event);
-        UserShortDto userDto = userServiceClient.getUserById(userId).getBody();
+        UserShortDto userDto = userCache.get(userId);
         dto.setInitiator(userDto);
         return dto;
     }
-
-    private Map<Long, Integer> getConfirmedRequestMap(List<Event> events) {
-        log.info("Запрос в requestService, добавление количества запросов для {}", events);
-        Map<Long, Integer> confirmedRequestsMap;
-        if (!events.isEmpty()) {
-            List<Long> eventIds = events.stream().map(Event::getId).toList();
-            confirmedRequestsMap = requestServiceClient.getConfirmedRequest(eventIds);
-        } else {
-            confirmedRequestsMap = Collections.emptyMap();
-        }
-        return confirmedRequestsMap;
-    }
 }
-
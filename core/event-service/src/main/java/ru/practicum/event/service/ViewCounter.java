@@ -0,0 +1,78 @@
+package ru.practicum.event.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.event.repository.EventRepository;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Накапливает новые просмотры событий в памяти и периодически прибавляет их к счётчику events.views
+ * одним пакетным UPDATE, вместо того чтобы обновлять строку события на каждый просмотр.
+ * <p>
+ * Просмотры приходят от {@link ViewRecorder} после записи пачки; просмотр, сохранённый в транзакции,
+ * учитывается только после её фиксации.
+ * Счётчик отстаёт от таблицы views не больше чем на интервал сброса; если сброс не удался,
+ * приращения возвращаются в буфер и уйдут со следующим.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ViewCounter {
+    final EventRepository eventRepository;
+    final Map<Long, Long> pending = new ConcurrentHashMap<>();
+
+    public void add(long eventId, long views) {
+        if (views == 0) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            pending.merge(eventId, views, Long::sum);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                pending.merge(eventId, views, Long::sum);
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${views.counter.flush-interval-ms:1000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        // remove забирает значение атомарно: приращение, добавленное после, попадёт в следующий сброс
+        Map<Long, Long> increments = new HashMap<>();
+        for (Long eventId : pending.keySet()) {
+            Long views = pending.remove(eventId);
+            if (views != null) {
+                increments.put(eventId, views);
+            }
+        }
+        try {
+            eventRepository.addViews(increments);
+            log.debug("Счётчики просмотров обновлены для {} событий", increments.size());
+        } catch (RuntimeException e) {
+            log.warn("Ошибка обновления счётчиков просмотров для {} событий, повтор при следующем сбросе",
+                    increments.size(), e);
+            increments.forEach((eventId, views) -> pending.merge(eventId, views, Long::sum));
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        flush();
+    }
+}
@@ -0,0 +1,101 @@
+package ru.practicum.event.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.cache.GenerationalMap;
+import ru.practicum.event.repository.ViewBatchRepository.NewView;
+import ru.practicum.event.repository.ViewRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Записывает просмотры событий в фоне пачками.
+ * <p>
+ * Просмотр кладётся в ограниченную очередь и сразу возвращает управление: запрос пользователя не ждёт БД.
+ * Повторы пары (событие, ip) отсеиваются в памяти по недавним парам в {@link GenerationalMap}.
+ * Повтор, который не застал ни одно поколение, отсеет уникальный индекс uq_views: пачка пишется через INSERT ... ON CONFLICT DO NOTHING,
+ * и в счётчик просмотров попадают только действительно вставленные строки.
+ * Пары из пачки, которую не удалось записать, забываются, и следующий их просмотр снова попадёт в очередь.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ViewRecorder {
+    static final long DROP_LOG_EVERY = 1_000;
+
+    final ViewRepository viewRepository;
+    final ViewCounter viewCounter;
+    final ViewRecorderProperties properties;
+
+    BlockingQueue<NewView> queue;
+    GenerationalMap<ViewKey, Boolean> seen;
+    final AtomicLong dropped = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        seen = new GenerationalMap<>(properties.getDedupCapacity());
+    }
+
+    public void record(long eventId, String ip) {
+        ViewKey key = new ViewKey(eventId, ip);
+        if (!seen.putIfAbsent(key, Boolean.TRUE)) {
+            return;
+        }
+        if (!queue.offer(new NewView(eventId, ip, LocalDateTime.now()))) {
+            // Пара не записана: следующий просмотр должен попасть в очередь
+            seen.remove(key);
+            long total = dropped.incrementAndGet();
+            if (total % DROP_LOG_EVERY == 1) {
+                log.warn("Очередь просмотров переполнена, всего отброшено {}", total);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${views.recorder.flush-interval-ms:500}")
+    public void flush() {
+        List<NewView> batch = new ArrayList<>(properties.getBatchSize());
+        while (queue.drainTo(batch, properties.getBatchSize()) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    private void write(List<NewView> batch) {
+        try {
+            boolean[] inserted = viewRepository.insertIgnoringDuplicates(batch);
+            int count = 0;
+            for (int i = 0; i < inserted.length; i++) {
+                if (inserted[i]) {
+                    viewCounter.add(batch.get(i).eventId(), 1);
+                    count++;
+                }
+            }
+            log.debug("Записано {} новых просмотров из {}", count, batch.size());
+        } catch (RuntimeException e) {
+            // Пачка не повторяется: просмотры — статистика, и повтор не должен копить очередь при недоступной БД
+            log.error("Ошибка записи {} просмотров", batch.size(), e);
+            batch.forEach(view -> seen.remove(new ViewKey(view.eventId(), view.ip())));
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        flush();
+    }
+
+    private record ViewKey(long eventId, String ip) {
+    }
+}
@@ -0,0 +1,22 @@
+package ru.practicum.event.service;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "views.recorder")
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Getter
+@Setter
+public class ViewRecorderProperties {
+    // Максимум ожидающих записи просмотров, сверх него новые просмотры отбрасываются
+    int queueCapacity = 50_000;
+    // Сколько просмотров записывается одним JDBC batch
+    int batchSize = 1_000;
+    // Сколько недавних пар (событие, ip) помнить для отсева повторов; в памяти до двух таких поколений
+    int dedupCapacity = 100_000;
+}
@@ -29,6 +29,7 @@ CREATE TABLE IF NOT EXISTS events (
     event_date TIMESTAMP WITHOUT TIME ZONE,
     published_on TIMESTAMP WITHOUT TIME ZONE,
     state VARCHAR(20),
+    views BIGINT NOT NULL DEFAULT 0,
     CONSTRAINT pk_events PRIMARY KEY (id),
     CONSTRAINT fk_events_category FOREIGN KEY (category_id) REFERENCES categories (id),
    CONSTRAINT fk_events_location FOREIGN KEY (location_id) REFERENCES locations (id)
@@ -44,6 +45,17 @@ CREATE TABLE IF NOT EXISTS views (
     CONSTRAINT uq_views UNIQUE (event_id, ip)
 );
 
+-- Счётчик просмотров вместо подзапроса COUNT по views для каждой строки
+ALTER TABLE events ADD COLUMN IF NOT EXISTS views BIGINT NOT NULL DEFAULT 0;
+
+-- Заполнение счётчика по уже сохранённым просмотрам: затрагивает только события, для которых он ещё не заполнен
+UPDATE events e SET views = c.cnt
+FROM (SELECT event_id, COUNT(*) AS cnt FROM views GROUP BY event_id) c
+WHERE e.id = c.event_id AND e.views = 0;
+
+-- Публичный список с сортировкой по просмотрам читается по индексу
+CREATE INDEX IF NOT EXISTS ix_events_state_views ON events (state, views DESC);
+
 
 CREATE TABLE IF NOT EXISTS compilations (
     id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
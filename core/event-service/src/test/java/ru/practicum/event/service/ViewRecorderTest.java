@@ -0,0 +1,71 @@
+package ru.practicum.event.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.event.repository.ViewBatchRepository.NewView;
+import ru.practicum.event.repository.ViewRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ViewRecorderTest {
+    ViewRepository viewRepository;
+    ViewCounter viewCounter;
+    ViewRecorder viewRecorder;
+
+    @BeforeEach
+    void setUp() {
+        viewRepository = mock(ViewRepository.class);
+        viewCounter = mock(ViewCounter.class);
+        viewRecorder = new ViewRecorder(viewRepository, viewCounter, new ViewRecorderProperties());
+        viewRecorder.init();
+    }
+
+    @Test
+    void repeatedViewIsWrittenOnce() {
+        when(viewRepository.insertIgnoringDuplicates(anyList())).thenReturn(new boolean[]{true});
+
+        viewRecorder.record(1, "10.0.0.1");
+        viewRecorder.record(1, "10.0.0.1");
+        viewRecorder.flush();
+        viewRecorder.record(1, "10.0.0.1");
+        viewRecorder.flush();
+
+        verify(viewRepository, times(1)).insertIgnoringDuplicates(anyList());
+        verify(viewCounter).add(1, 1);
+    }
+
+    @Test
+    void viewFromFailedBatchIsRecordedAgain() {
+        // flush переиспользует список пачки, поэтому записанные просмотры копируются
+        List<List<Long>> written = new ArrayList<>();
+        when(viewRepository.insertIgnoringDuplicates(anyList()))
+                .thenThrow(new IllegalStateException("БД недоступна"))
+                .thenAnswer(invocation -> {
+                    List<NewView> batch = invocation.getArgument(0);
+                    written.add(batch.stream().map(NewView::eventId).toList());
+                    return new boolean[]{true, true};
+                });
+
+        viewRecorder.record(1, "10.0.0.1");
+        viewRecorder.record(2, "10.0.0.2");
+        viewRecorder.flush();
+        verify(viewCounter, never()).add(1, 1);
+
+        viewRecorder.record(1, "10.0.0.1");
+        viewRecorder.record(2, "10.0.0.2");
+        viewRecorder.flush();
+
+        assertEquals(List.of(List.of(1L, 2L)), written);
+        verify(viewCounter).add(1, 1);
+        verify(viewCounter).add(2, 1);
+    }
+}
@@ -0,0 +1,85 @@
+package ru.practicum.broadcast;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+
+/**
+ * Отправляет запрос каждому экземпляру заданных сервисов из discovery после фиксации текущей транзакции.
+ * <p>
+ * Запрос уходит всем экземплярам, а не одному через балансировщик: у каждого экземпляра свой кеш.
+ * Отправка идёт в фоне и не повторяется, ошибка экземпляра только записывается в лог;
+ * вне транзакции запрос отправляется сразу.
+ */
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class AfterCommitBroadcaster {
+    DiscoveryClient discoveryClient;
+    List<String> services;
+    RestClient restClient;
+    ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * @param services  сервисы, экземплярам которых отправляется запрос
+     * @param timeoutMs сколько ждать ответа одного экземпляра
+     */
+    public AfterCommitBroadcaster(DiscoveryClient discoveryClient, List<String> services, long timeoutMs) {
+        this.discoveryClient = discoveryClient;
+        this.services = services;
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(Duration.ofMillis(timeoutMs));
+        requestFactory.setReadTimeout(Duration.ofMillis(timeoutMs));
+        this.restClient = RestClient.builder().requestFactory(requestFactory).build();
+    }
+
+    /**
+     * @param description что отправляется, для сообщения об ошибке
+     * @param request     запрос к одному экземпляру
+     */
+    public void broadcastAfterCommit(String description, BiConsumer<RestClient, ServiceInstance> request) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            executor.execute(() -> broadcast(description, request));
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                executor.execute(() -> broadcast(description, request));
+            }
+        });
+    }
+
+    private void broadcast(String description, BiConsumer<RestClient, ServiceInstance> request) {
+        for (String service : services) {
+            for (ServiceInstance instance : discoveryClient.getInstances(service)) {
+                executor.execute(() -> send(instance, description, request));
+            }
+        }
+    }
+
+    private void send(ServiceInstance instance, String description, BiConsumer<RestClient, ServiceInstance> request) {
+        try {
+            request.accept(restClient, instance);
+        } catch (RestClientException e) {
+            log.warn("Не удалось отправить {} в {} ({}): {}",
+                    description, instance.getServiceId(), instance.getUri(), e.getMessage());
+        }
+    }
+
+    public void stop() {
+        executor.shutdown();
+    }
+}
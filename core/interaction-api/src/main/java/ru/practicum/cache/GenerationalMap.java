@@ -0,0 +1,106 @@
+package ru.practicum.cache;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BinaryOperator;
+
+/**
+ * Ограниченная по размеру таблица из двух поколений.
+ * <p>
+ * Когда текущее поколение заполняется до generationSize, оно становится предыдущим, а самое старое
+ * забывается целиком. Значение, найденное в предыдущем поколении, переносится в текущее, поэтому часто
+ * нужные ключи переживают смену поколений. В памяти не больше двух поколений.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class GenerationalMap<K, V> {
+    final int generationSize;
+    volatile Map<K, V> recent = new ConcurrentHashMap<>();
+    volatile Map<K, V> previous = new ConcurrentHashMap<>();
+
+    public GenerationalMap(int generationSize) {
+        this.generationSize = generationSize;
+    }
+
+    /**
+     * @return значение или null, если ключа нет ни в одном поколении
+     */
+    public V get(K key) {
+        V value = recent.get(key);
+        if (value == null) {
+            value = previous.get(key);
+            if (value != null) {
+                promote(key, value);
+            }
+        }
+        return value;
+    }
+
+    public void put(K key, V value) {
+        recent.put(key, value);
+        rotateIfFull();
+    }
+
+    /**
+     * Добавляет значение, если ключа нет ни в одном поколении.
+     *
+     * @return true, если значение добавлено
+     */
+    public boolean putIfAbsent(K key, V value) {
+        if (get(key) != null || recent.putIfAbsent(key, value) != null) {
+            return false;
+        }
+        rotateIfFull();
+        return true;
+    }
+
+    /**
+     * Как {@link Map#merge}, но значение из предыдущего поколения тоже сводится с новым.
+     *
+     * @param remapping получает значение из таблицы и новое, возвращает то, что останется
+     * @return значение, оставшееся в таблице
+     */
+    public V merge(K key, V value, BinaryOperator<V> remapping) {
+        V older = previous.get(key);
+        V merged = older == null ? value : remapping.apply(older, value);
+        V stored = recent.merge(key, merged, remapping);
+        rotateIfFull();
+        return stored;
+    }
+
+    public void remove(K key) {
+        // Под блокировкой ключа в текущем поколении, как и перенос: удалённое значение не вернётся из предыдущего
+        recent.compute(key, (k, current) -> {
+            previous.remove(k);
+            return null;
+        });
+    }
+
+    private void promote(K key, V value) {
+        recent.compute(key, (k, current) -> {
+            // Значение могли удалить или заменить, пока его читали из предыдущего поколения
+            if (current != null || previous.get(k) != value) {
+                return current;
+            }
+            return value;
+        });
+        rotateIfFull();
+    }
+
+    private void rotateIfFull() {
+        if (recent.size() >= generationSize) {
+            rotate();
+        }
+    }
+
+    private synchronized void rotate() {
+        if (recent.size() < generationSize) {
+            // Поколение уже сменил другой поток
+            return;
+        }
+        previous = recent;
+        recent = new ConcurrentHashMap<>();
+    }
+}
@@ -71,7 +71,7 @@ public class BaseErrorHandler {
 
     @ExceptionHandler(ServiceUnavailableException.class)
     public ResponseEntity<ErrorResponse> handleServiceUnavailableException(ServiceUnavailableException e) {
-        return handleException(e, HttpStatus.BAD_REQUEST, "Сервис не доступен");
+        return handleException(e, HttpStatus.SERVICE_UNAVAILABLE, "Сервис не доступен");
     }
 
     // Общий метод обработки исключений
@@ -0,0 +1,26 @@
+package ru.practicum.request.dto;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Число подтверждённых заявок на событие.
+ * Версия растёт с каждым изменением числа, поэтому из двух значений одного события новее то, у которого она больше;
+ * у события без подтверждённых заявок версия 0.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@ToString
+public class ConfirmedCountDto {
+    Long eventId;
+    int confirmed;
+    long version;
+}
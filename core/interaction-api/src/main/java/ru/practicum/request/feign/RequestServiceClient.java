@@ -4,6 +4,7 @@ import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
+import ru.practicum.request.dto.ConfirmedCountDto;
 
 import java.util.List;
 import java.util.Map;
@@ -14,6 +15,9 @@ public interface RequestServiceClient {
     @GetMapping("/requests/count-confirmed")
     Map<Long, Integer> getConfirmedRequest(@RequestParam List<Long> eventIds);
 
+    @GetMapping("/requests/count-confirmed/versioned")
+    List<ConfirmedCountDto> getConfirmedCounts(@RequestParam List<Long> eventIds);
+
     @GetMapping(path = "/registered/{eventId}/{userId}")
     boolean isRegistered(@PathVariable("eventId") Long eventId,
                          @PathVariable("userId") Long userId);
@@ -5,6 +5,7 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
 import ru.practicum.exception.ServiceUnavailableException;
+import ru.practicum.request.dto.ConfirmedCountDto;
 
 import java.util.List;
 import java.util.Map;
@@ -18,6 +19,11 @@ public class RequestServiceFallback {
         throw new ServiceUnavailableException("RequestService недоступен");
     }
 
+    public List<ConfirmedCountDto> getConfirmedCounts(@RequestParam List<Long> eventIds) {
+        log.warn("Активирован резервный вариант для getConfirmedCounts для запроса  c eventIds {}", eventIds);
+        throw new ServiceUnavailableException("RequestService недоступен");
+    }
+
     public boolean isRegistered(@PathVariable("eventId") Long eventId,
                                 @PathVariable("userId") Long userId) {
         log.warn("Активирован резервный вариант для isRegistered для запроса  c eventId {} и userId {}", eventId, userId);
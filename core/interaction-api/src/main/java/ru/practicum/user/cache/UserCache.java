@@ -0,0 +1,210 @@
+package ru.practicum.user.cache;
+
+import feign.FeignException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.practicum.cache.GenerationalMap;
+import ru.practicum.exception.ServiceUnavailableException;
+import ru.practicum.user.dto.UserShortDto;
+import ru.practicum.user.feign.UserServiceClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Кеш {@link UserShortDto} перед {@link UserServiceClient}.
+ * <p>
+ * Записи живут не дольше ttlMs и хранятся в {@link GenerationalMap} с поколениями по половине maxSize.
+ * Одновременные промахи по одному пользователю ждут один общий запрос, а промахи по разным
+ * пользователям, пришедшие в течение batchWindowMs, запрашиваются одним вызовом /admin/users/batch.
+ * <p>
+ * Удаление пользователя в user-service сбрасывает запись через {@link UserCacheController}.
+ * Сброс и сохранение загруженного пользователя выполняются под блокировкой его ключа в таблице загрузок,
+ * поэтому загрузка, начатая до удаления, не вернёт пользователя в кеш.
+ * <p>
+ * При user.cache.enabled=false каждый вызов идёт прямо в user-service.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class UserCache {
+    final UserServiceClient userServiceClient;
+    final UserCacheProperties properties;
+
+    GenerationalMap<Long, Entry> users;
+    final Map<Long, CompletableFuture<UserShortDto>> loading = new ConcurrentHashMap<>();
+    final Queue<Load> pending = new ConcurrentLinkedQueue<>();
+    final AtomicBoolean flushScheduled = new AtomicBoolean();
+    final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "user-cache-batcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+    final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @PostConstruct
+    public void init() {
+        users = new GenerationalMap<>(properties.getMaxSize() / 2);
+    }
+
+    /**
+     * @return пользователь или null, если user-service ответил без тела
+     */
+    public UserShortDto get(Long userId) {
+        if (!properties.isEnabled()) {
+            return userServiceClient.getUserById(userId).getBody();
+        }
+        Entry cached = users.get(userId);
+        if (cached != null && cached.isFresh()) {
+            return cached.user();
+        }
+        CompletableFuture<UserShortDto> created = new CompletableFuture<>();
+        CompletableFuture<UserShortDto> future = loading.putIfAbsent(userId, created);
+        if (future == null) {
+            future = created;
+            enqueue(new Load(userId, created));
+        }
+        return await(userId, future);
+    }
+
+    public void evict(Long userId) {
+        loading.compute(userId, (id, future) -> {
+            users.remove(id);
+            return null;
+        });
+        log.debug("Пользователь {} удалён из кеша", userId);
+    }
+
+    private void enqueue(Load load) {
+        pending.add(load);
+        if (flushScheduled.compareAndSet(false, true)) {
+            scheduler.schedule(this::flush, properties.getBatchWindowMs(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush() {
+        // Флаг сбрасывается до разбора очереди: промах, добавленный позже, запланирует следующий сбор
+        flushScheduled.set(false);
+        List<Load> batch = new ArrayList<>();
+        Load load;
+        while ((load = pending.poll()) != null) {
+            batch.add(load);
+            if (batch.size() >= properties.getMaxBatchSize()) {
+                submit(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        if (!batch.isEmpty()) {
+            submit(batch);
+        }
+    }
+
+    private void submit(List<Load> batch) {
+        if (batch.size() == 1) {
+            executor.execute(() -> loadOne(batch.get(0)));
+        } else {
+            executor.execute(() -> loadBatch(batch));
+        }
+    }
+
+    private void loadBatch(List<Load> batch) {
+        List<Long> userIds = batch.stream().map(Load::userId).toList();
+        Map<Long, UserShortDto> users;
+        try {
+            List<UserShortDto> found = userServiceClient.getUsersByIds(userIds).getBody();
+            users = found == null ? Map.of() : found.stream()
+                    .collect(Collectors.toMap(UserShortDto::getId, Function.identity(), (a, b) -> a));
+        } catch (FeignException.NotFound e) {
+            // Пакетный запрос отвечает 404 целиком, если не найден хотя бы один пользователь:
+            // запрашиваем по одному, чтобы ошибку получили только ждущие отсутствующего
+            log.debug("Не все пользователи {} найдены, запрос по одному", userIds);
+            batch.forEach(load -> executor.execute(() -> loadOne(load)));
+            return;
+        } catch (RuntimeException e) {
+            batch.forEach(load -> fail(load, e));
+            return;
+        }
+        batch.forEach(load -> complete(load, users.get(load.userId())));
+    }
+
+    private void loadOne(Load load) {
+        UserShortDto user;
+        try {
+            user = userServiceClient.getUserById(load.userId()).getBody();
+        } catch (RuntimeException e) {
+            fail(load, e);
+            return;
+        }
+        complete(load, user);
+    }
+
+    private void complete(Load load, UserShortDto user) {
+        loading.computeIfPresent(load.userId(), (id, future) -> {
+            if (future != load.future()) {
+                return future;
+            }
+            if (user != null) {
+                users.put(id, new Entry(user, System.currentTimeMillis() + properties.getTtlMs()));
+            }
+            return null;
+        });
+        load.future().complete(user);
+    }
+
+    private void fail(Load load, RuntimeException e) {
+        loading.remove(load.userId(), load.future());
+        load.future().completeExceptionally(e);
+    }
+
+    private UserShortDto await(Long userId, CompletableFuture<UserShortDto> future) {
+        try {
+            return future.get(properties.getTimeoutMs(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new ServiceUnavailableException("UserService недоступен");
+        } catch (TimeoutException e) {
+            log.warn("UserService не вернул пользователя {} за {} мс", userId, properties.getTimeoutMs());
+            throw new ServiceUnavailableException("UserService недоступен");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("UserService недоступен");
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdown();
+        executor.shutdown();
+    }
+
+    private record Entry(UserShortDto user, long expiresAt) {
+        boolean isFresh() {
+            return System.currentTimeMillis() < expiresAt;
+        }
+    }
+
+    private record Load(Long userId, CompletableFuture<UserShortDto> future) {
+    }
+}
@@ -0,0 +1,26 @@
+package ru.practicum.user.cache;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Принимает от user-service уведомления об удалении пользователя.
+ */
+@RestController
+@RequiredArgsConstructor
+@RequestMapping("/internal/users/cache")
+public class UserCacheController {
+
+    private final UserCache userCache;
+
+    @DeleteMapping("/{userId}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void evict(@PathVariable Long userId) {
+        userCache.evict(userId);
+    }
+}
@@ -0,0 +1,28 @@
+package ru.practicum.user.cache;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "user.cache")
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Getter
+@Setter
+public class UserCacheProperties {
+    // Выключенный кеш передаёт каждый запрос в user-service
+    boolean enabled = false;
+    // Сколько хранить пользователя; удаление сбрасывает запись раньше, TTL страхует от потерянного уведомления
+    long ttlMs = 5 * 60_000;
+    // Сколько пользователей держать в памяти
+    int maxSize = 10_000;
+    // Сколько ждать другие промахи, чтобы запросить их одним вызовом /admin/users/batch
+    long batchWindowMs = 2;
+    // Сколько пользователей запрашивать за один вызов
+    int maxBatchSize = 100;
+    // Сколько вызывающий ждёт ответа user-service
+    long timeoutMs = 1_000;
+}
@@ -6,7 +6,7 @@ import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
 import org.springframework.cloud.openfeign.EnableFeignClients;
 
-@SpringBootApplication(scanBasePackages = {"ru.practicum.request","ru.practicum.client"})
+@SpringBootApplication(scanBasePackages = {"ru.practicum.request", "ru.practicum.client", "ru.practicum.user.cache"})
 @EnableDiscoveryClient
 @ConfigurationPropertiesScan
 @EnableFeignClients(basePackages = "ru.practicum")
@@ -5,6 +5,7 @@ import jakarta.validation.constraints.Positive;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import ru.practicum.request.dto.ConfirmedCountDto;
 import ru.practicum.request.dto.EventRequestStatusUpdateRequest;
 import ru.practicum.request.dto.EventRequestStatusUpdateResult;
 import ru.practicum.request.dto.ParticipationRequestDto;
@@ -65,6 +66,12 @@ public class PrivateRequestController {
         return requestService.getConfirmedRequestsCounts(eventIds);
     }
 
+    @GetMapping("/requests/count-confirmed/versioned")
+    @ResponseStatus(HttpStatus.OK)
+    public List<ConfirmedCountDto> getConfirmedCounts(@RequestParam List<Long> eventIds) {
+        return requestService.getConfirmedCounts(eventIds);
+    }
+
     @GetMapping(path = "/registered/{eventId}/{userId}")
     public boolean isRegistered(@PathVariable("eventId") Long eventId,
                                 @PathVariable("userId") Long userId) {
@@ -0,0 +1,39 @@
+package ru.practicum.request.repository;
+
+import ru.practicum.request.dto.ConfirmedCountDto;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Учёт подтверждённых заявок по событиям: число подтверждённых заявок события хранится в одной строке,
+ * и проверка лимита участников не пересчитывает заявки.
+ */
+public interface ConfirmedCountRepository {
+    /**
+     * Изменяет число подтверждённых заявок события без проверки лимита и увеличивает его версию.
+     *
+     * @param delta на сколько изменилось число подтверждённых заявок
+     * @return новое число с версией
+     */
+    ConfirmedCountDto addConfirmed(long eventId, int delta);
+
+    /**
+     * Атомарно занимает места в событии, но не больше, чем осталось до лимита.
+     * Параллельные вызовы для одного события выполняются по очереди, поэтому лимит не превышается.
+     *
+     * @param requested сколько мест нужно
+     * @param limit     лимит участников события, больше 0
+     * @return новое число и сколько мест занято или пусто, если свободных мест нет
+     */
+    Optional<Reservation> reserveConfirmed(long eventId, int requested, int limit);
+
+    /**
+     * @return числа подтверждённых заявок; событий без подтверждённых заявок в списке нет
+     */
+    List<ConfirmedCountDto> findConfirmedCounts(Collection<Long> eventIds);
+
+    record Reservation(ConfirmedCountDto count, int granted) {
+    }
+}
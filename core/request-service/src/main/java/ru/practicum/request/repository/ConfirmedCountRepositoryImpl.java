@@ -0,0 +1,75 @@
+package ru.practicum.request.repository;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import ru.practicum.request.dto.ConfirmedCountDto;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ConfirmedCountRepositoryImpl implements ConfirmedCountRepository {
+    // Строка события создаётся при первом изменении; блокировка строки упорядочивает изменения одного события
+    static final String ADD_SQL = """
+            INSERT INTO confirmed_counts (event_id, confirmed, version)
+            VALUES (:eventId, :delta, 1)
+            ON CONFLICT (event_id) DO UPDATE
+            SET confirmed = confirmed_counts.confirmed + EXCLUDED.confirmed,
+                version = confirmed_counts.version + 1
+            RETURNING event_id, confirmed, version
+            """;
+    static final String CREATE_SQL = """
+            INSERT INTO confirmed_counts (event_id, confirmed, version)
+            VALUES (:eventId, 0, 0)
+            ON CONFLICT (event_id) DO NOTHING
+            """;
+    // Строка блокируется в подзапросе, поэтому old — число до изменения с учётом уже зафиксированных изменений;
+    // если мест нет, условие не выполняется и строка не меняется
+    static final String RESERVE_SQL = """
+            UPDATE confirmed_counts c
+            SET confirmed = LEAST(old.confirmed + :requested, :limit),
+                version = c.version + 1
+            FROM (SELECT event_id, confirmed FROM confirmed_counts WHERE event_id = :eventId FOR UPDATE) old
+            WHERE c.event_id = old.event_id
+              AND old.confirmed < :limit
+            RETURNING c.event_id, c.confirmed, c.version, c.confirmed - old.confirmed AS granted
+            """;
+    static final String FIND_SQL = """
+            SELECT event_id, confirmed, version
+            FROM confirmed_counts
+            WHERE event_id IN (:eventIds)
+            """;
+    static final RowMapper<ConfirmedCountDto> ROW_MAPPER = (rs, rowNum) ->
+            new ConfirmedCountDto(rs.getLong("event_id"), rs.getInt("confirmed"), rs.getLong("version"));
+
+    final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Override
+    public ConfirmedCountDto addConfirmed(long eventId, int delta) {
+        return jdbcTemplate.queryForObject(ADD_SQL, Map.of("eventId", eventId, "delta", delta), ROW_MAPPER);
+    }
+
+    @Override
+    public Optional<Reservation> reserveConfirmed(long eventId, int requested, int limit) {
+        // Строка нужна до условного UPDATE: первая подтверждённая заявка события тоже проверяется по лимиту
+        jdbcTemplate.update(CREATE_SQL, Map.of("eventId", eventId));
+        List<Reservation> reserved = jdbcTemplate.query(RESERVE_SQL,
+                Map.of("eventId", eventId, "requested", requested, "limit", limit),
+                (rs, rowNum) -> new Reservation(ROW_MAPPER.mapRow(rs, rowNum), rs.getInt("granted")));
+        return reserved.stream().findFirst();
+    }
+
+    @Override
+    public List<ConfirmedCountDto> findConfirmedCounts(Collection<Long> eventIds) {
+        if (eventIds.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.query(FIND_SQL, Map.of("eventIds", eventIds), ROW_MAPPER);
+    }
+}
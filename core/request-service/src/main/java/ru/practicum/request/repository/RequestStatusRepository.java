@@ -0,0 +1,27 @@
+package ru.practicum.request.repository;
+
+import ru.practicum.request.dto.RequestStatus;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Условные переходы статусов заявок: статус меняется, только если заявка всё ещё в ожидаемом статусе,
+ * поэтому из двух параллельных изменений одной заявки применяется одно.
+ */
+public interface RequestStatusRepository {
+    /**
+     * Переводит заявки из статуса from в статус to.
+     *
+     * @return id заявок, статус которых изменился
+     */
+    List<Long> changeStatus(Collection<Long> ids, RequestStatus from, RequestStatus to);
+
+    /**
+     * Отменяет заявку, если она ещё не отменена.
+     *
+     * @return статус заявки до отмены или пусто, если заявка уже отменена
+     */
+    Optional<RequestStatus> cancel(long requestId);
+}
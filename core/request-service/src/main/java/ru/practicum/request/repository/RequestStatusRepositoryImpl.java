@@ -0,0 +1,52 @@
+package ru.practicum.request.repository;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import ru.practicum.request.dto.RequestStatus;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class RequestStatusRepositoryImpl implements RequestStatusRepository {
+    // Параллельный UPDATE той же заявки ждёт фиксации первого и проверяет статус заново
+    static final String CHANGE_STATUS_SQL = """
+            UPDATE requests
+            SET status = :to
+            WHERE id IN (:ids)
+              AND status = :from
+            RETURNING id
+            """;
+    // Строка блокируется в подзапросе, поэтому old — статус до отмены с учётом уже зафиксированных изменений
+    static final String CANCEL_SQL = """
+            UPDATE requests r
+            SET status = 'CANCELED'
+            FROM (SELECT id, status FROM requests WHERE id = :id FOR UPDATE) old
+            WHERE r.id = old.id
+              AND old.status <> 'CANCELED'
+            RETURNING old.status
+            """;
+
+    final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Override
+    public List<Long> changeStatus(Collection<Long> ids, RequestStatus from, RequestStatus to) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.queryForList(CHANGE_STATUS_SQL,
+                Map.of("ids", ids, "from", from.name(), "to", to.name()), Long.class);
+    }
+
+    @Override
+    public Optional<RequestStatus> cancel(long requestId) {
+        return jdbcTemplate.queryForList(CANCEL_SQL, Map.of("id", requestId), String.class).stream()
+                .findFirst()
+                .map(RequestStatus::valueOf);
+    }
+}
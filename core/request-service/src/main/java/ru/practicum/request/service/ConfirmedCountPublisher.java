@@ -0,0 +1,51 @@
+package ru.practicum.request.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import ru.practicum.broadcast.AfterCommitBroadcaster;
+import ru.practicum.request.dto.ConfirmedCountDto;
+
+import java.util.List;
+
+/**
+ * Рассылает новые числа подтверждённых заявок сервисам, которые их кешируют.
+ * <p>
+ * Изменение отправляется каждому экземпляру после фиксации транзакции через {@link AfterCommitBroadcaster}.
+ * Отправляется не приращение, а новое число с версией, поэтому повтор или обгон одного сообщения другим
+ * не портит кеш; экземпляр, не получивший изменение, перечитает число по истечении TTL своего кеша.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ConfirmedCountPublisher {
+    final DiscoveryClient discoveryClient;
+    final ConfirmedCountPublisherProperties properties;
+    AfterCommitBroadcaster broadcaster;
+
+    @PostConstruct
+    public void init() {
+        broadcaster = new AfterCommitBroadcaster(discoveryClient, properties.getServices(), properties.getTimeoutMs());
+    }
+
+    public void countChanged(ConfirmedCountDto count) {
+        List<ConfirmedCountDto> counts = List.of(count);
+        broadcaster.broadcastAfterCommit("числа подтверждённых заявок " + counts, (restClient, instance) ->
+                restClient.put()
+                        .uri(instance.getUri() + "/internal/events/confirmed-requests")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(counts)
+                        .retrieve()
+                        .toBodilessEntity());
+    }
+
+    @PreDestroy
+    public void stop() {
+        broadcaster.stop();
+    }
+}
@@ -0,0 +1,23 @@
+package ru.practicum.request.service;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@ConfigurationProperties(prefix = "requests.confirmed-publisher")
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Getter
+@Setter
+public class ConfirmedCountPublisherProperties {
+    // Сервисы, которые кешируют числа подтверждённых заявок
+    List<String> services = new ArrayList<>();
+    // Сколько ждать ответа одного экземпляра сервиса
+    long timeoutMs = 1_000;
+}
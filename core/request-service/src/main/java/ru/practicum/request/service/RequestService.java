@@ -1,5 +1,6 @@
 package ru.practicum.request.service;
 
+import ru.practicum.request.dto.ConfirmedCountDto;
 import ru.practicum.request.dto.EventRequestStatusUpdateRequest;
 import ru.practicum.request.dto.EventRequestStatusUpdateResult;
 import ru.practicum.request.dto.ParticipationRequestDto;
@@ -20,5 +21,7 @@ public interface RequestService {
 
     Map<Long, Integer> getConfirmedRequestsCounts(List<Long> eventIds);
 
+    List<ConfirmedCountDto> getConfirmedCounts(List<Long> eventIds);
+
     boolean isRegistered(Long eventId, Long userId);
 }
\ No newline at end of file
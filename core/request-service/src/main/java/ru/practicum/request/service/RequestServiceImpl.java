@@ -8,6 +8,8 @@ import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.practicum.client.CollectorClient;
 import ru.practicum.event.dto.EventFullDto;
 import ru.practicum.event.dto.State;
@@ -17,6 +19,7 @@ import ru.practicum.evm.stats.proto.ActionTypeProto;
 import ru.practicum.evm.stats.proto.UserActionProto;
 import ru.practicum.exception.ConditionsNotMetException;
 import ru.practicum.exception.NotFoundException;
+import ru.practicum.request.dto.ConfirmedCountDto;
 import ru.practicum.request.dto.EventRequestStatusUpdateRequest;
 import ru.practicum.request.dto.EventRequestStatusUpdateResult;
 import ru.practicum.request.dto.ParticipationRequestDto;
@@ -25,7 +28,7 @@ import ru.practicum.request.model.Request;
 import ru.practicum.request.dto.RequestStatus;
 import ru.practicum.request.repository.RequestRepository;
 import ru.practicum.user.dto.UserShortDto;
-import ru.practicum.user.feign.UserServiceClient;
+import ru.practicum.user.cache.UserCache;
 
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
@@ -33,6 +36,8 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -43,9 +48,15 @@ public class RequestServiceImpl implements RequestService {
     EventServiceClient eventServiceClient;
     RequestRepository requestRepository;
     RequestMapper requestMapper;
-    UserServiceClient userServiceClient;
+    UserCache userCache;
     CollectorClient collectorClient;
+    ConfirmedCountPublisher confirmedCountPublisher;
+    TransactionTemplate transactionTemplate;
 
+    /**
+     * Запросы к другим сервисам выполняются до транзакции: соединение с базой занято только вставкой заявки
+     * и занятием места.
+     */
     @Override
     public ParticipationRequestDto createParticipationRequest(long userId, long eventId) {
         log.info("Создание запроса на участии в мероприятии для userId {} с eventId {}", userId, eventId);
@@ -75,16 +86,11 @@ public class RequestServiceImpl implements RequestService {
                 .status(status)
                 .created(LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS))
                 .build();
-
-        try {
-            request = requestRepository.save(request);
-        } catch (DataIntegrityViolationException e) {
-            throw new ConditionsNotMetException("Нельзя добавить повторный запрос на участие в событии");
-        }
+        Request saved = transactionTemplate.execute(tx -> saveParticipationRequest(request, event));
 
         log.info("Отправка регистрации на мероприятие в collector");
         collectorClient.sendUserAction(userId, eventId, ActionTypeProto.ACTION_REGISTER);
-        return requestMapper.toDto(request);
+        return requestMapper.toDto(saved);
     }
 
     @Override
@@ -110,7 +116,28 @@ public class RequestServiceImpl implements RequestService {
     @Override
     public EventRequestStatusUpdateResult changeEventRequestsStatusByInitiator(EventRequestStatusUpdateRequest updateRequest, long userId, long eventId) {
         EventFullDto event = eventServiceClient.getEventById(eventId);
+        return transactionTemplate.execute(tx -> changeRequestsStatus(updateRequest, event));
+    }
 
+    private Request saveParticipationRequest(Request request, EventFullDto event) {
+        Request saved;
+        try {
+            saved = requestRepository.save(request);
+        } catch (DataIntegrityViolationException e) {
+            throw new ConditionsNotMetException("Нельзя добавить повторный запрос на участие в событии");
+        }
+        if (saved.getStatus() == RequestStatus.CONFIRMED) {
+            if (event.getParticipantLimit() == 0) {
+                changeConfirmedCount(event.getId(), 1);
+            } else if (reserveConfirmed(event.getId(), 1, event.getParticipantLimit()) == 0) {
+                // Проверка лимита могла успеть до того, как место занял параллельный запрос: заявка откатывается
+                throw new ConditionsNotMetException("У события заполнен лимит участников");
+            }
+        }
+        return saved;
+    }
+
+    private EventRequestStatusUpdateResult changeRequestsStatus(EventRequestStatusUpdateRequest updateRequest, EventFullDto event) {
         List<Long> requestIds = updateRequest.getRequestIds();
         List<Request> foundRequests = requestRepository.findAllById(requestIds);
         EventRequestStatusUpdateResult result = new EventRequestStatusUpdateResult();
@@ -135,6 +162,7 @@ public class RequestServiceImpl implements RequestService {
     }
 
     @Override
+    @Transactional
     public ParticipationRequestDto cancelParticipantRequest(long userId, long requestId) {
         Request request = requestRepository.findById(requestId).orElseThrow(
                 () -> new NotFoundException(String.format("Запрос на участие в событии с id запроса=%d не найден", requestId))
@@ -145,10 +173,15 @@ public class RequestServiceImpl implements RequestService {
             throw new ConditionsNotMetException("Пользователь не является участником в запросе на участие в событии");
         }
 
-        request.setStatus(RequestStatus.CANCELED);
-        requestRepository.save(request);
+        // Число уменьшается только той отменой, которая сама перевела заявку из CONFIRMED
+        Optional<RequestStatus> previousStatus = requestRepository.cancel(requestId);
+        if (previousStatus.filter(RequestStatus.CONFIRMED::equals).isPresent()) {
+            changeConfirmedCount(request.getEventId(), -1);
+        }
 
-        return requestMapper.toDto(request);
+        ParticipationRequestDto canceled = requestMapper.toDto(request);
+        canceled.setStatus(RequestStatus.CANCELED);
+        return canceled;
     }
 
     private void checkParticipantLimit(int participantLimit, int confirmedRequests) {
@@ -158,11 +191,42 @@ public class RequestServiceImpl implements RequestService {
     }
 
     private int getConfirmedRequests(long eventId) {
-        return requestRepository.findCountOfConfirmedRequestsByEventId(eventId);
+        return requestRepository.findConfirmedCounts(List.of(eventId)).stream()
+                .mapToInt(ConfirmedCountDto::getConfirmed)
+                .findFirst()
+                .orElse(0);
     }
 
-    private void updateStatus(RequestStatus status, List<Long> ids) {
-        requestRepository.updateStatus(status, ids);
+    /**
+     * Переводит заявки из ожидания в новый статус. Если часть заявок успел изменить параллельный запрос,
+     * транзакция откатывается.
+     */
+    private void changePendingStatus(RequestStatus status, List<Long> ids) {
+        List<Long> changed = requestRepository.changeStatus(ids, RequestStatus.PENDING, status);
+        if (changed.size() != ids.size()) {
+            throw new ConditionsNotMetException("Заявка должна находиться в ожидании");
+        }
+    }
+
+    private void changeConfirmedCount(long eventId, int delta) {
+        ConfirmedCountDto count = requestRepository.addConfirmed(eventId, delta);
+        log.debug("Подтверждённых заявок на событие {}: {}", eventId, count.getConfirmed());
+        confirmedCountPublisher.countChanged(count);
+    }
+
+    /**
+     * Занимает места в событии с лимитом участников.
+     *
+     * @return сколько мест занято, от 0 до requested
+     */
+    private int reserveConfirmed(long eventId, int requested, int participantLimit) {
+        return requestRepository.reserveConfirmed(eventId, requested, participantLimit)
+                .map(reservation -> {
+                    log.debug("Подтверждённых заявок на событие {}: {}", eventId, reservation.count().getConfirmed());
+                    confirmedCountPublisher.countChanged(reservation.count());
+                    return reservation.granted();
+                })
+                .orElse(0);
     }
 
     private void handleConfirmedRequests(EventFullDto event, List<Request> foundRequests, EventRequestStatusUpdateResult result, List<ParticipationRequestDto> confirmed, List<ParticipationRequestDto> rejected) {
@@ -173,17 +237,32 @@ public class RequestServiceImpl implements RequestService {
             return;
         }
         checkParticipantLimit(participantLimit, confirmedRequests);
+        if (foundRequests.isEmpty()) {
+            return;
+        }
+        // Заявки блокируются раньше строки счётчика, как и при отмене, поэтому подтверждение и отмена
+        // одной заявки не блокируют друг друга навсегда
+        List<Long> requestIds = foundRequests.stream().map(Request::getId).toList();
+        changePendingStatus(RequestStatus.CONFIRMED, requestIds);
+        // Места занимаются одним условным UPDATE: параллельное подтверждение не превысит лимит
+        int granted = reserveConfirmed(event.getId(), requestIds.size(), participantLimit);
+        if (granted == 0) {
+            throw new ConditionsNotMetException("У события заполнен лимит участников");
+        }
         for (Request request : foundRequests) {
-            if (confirmedRequests >= participantLimit) {
+            if (confirmed.size() >= granted) {
                 rejected.add(requestMapper.toDto(request));
                 continue;
             }
-            request.setStatus(RequestStatus.CONFIRMED);
-            confirmed.add(requestMapper.toDto(request));
-            ++confirmedRequests;
+            ParticipationRequestDto dto = requestMapper.toDto(request);
+            dto.setStatus(RequestStatus.CONFIRMED);
+            confirmed.add(dto);
+        }
+        if (granted < requestIds.size()) {
+            // Заявки, на которые не хватило мест, остаются в ожидании
+            requestRepository.changeStatus(requestIds.subList(granted, requestIds.size()),
+                    RequestStatus.CONFIRMED, RequestStatus.PENDING);
         }
-        List<Long> confirmedRequestIds = confirmed.stream().map(ParticipationRequestDto::getId).toList();
-        updateStatus(RequestStatus.CONFIRMED, confirmedRequestIds);
     }
 
     @Override
@@ -191,12 +270,22 @@ public class RequestServiceImpl implements RequestService {
         if (eventIds.isEmpty()) {
             return Collections.emptyMap();
         }
-        List<Object[]> counts = requestRepository.countConfirmedRequestsByEventIds(eventIds);
-        return counts.stream()
-                .collect(Collectors.toMap(
-                        arr -> (Long) arr[0],  // eventId
-                        arr -> ((Number) arr[1]).intValue()  // count
-                ));
+        return requestRepository.findConfirmedCounts(eventIds).stream()
+                .collect(Collectors.toMap(ConfirmedCountDto::getEventId, ConfirmedCountDto::getConfirmed));
+    }
+
+    @Override
+    public List<ConfirmedCountDto> getConfirmedCounts(List<Long> eventIds) {
+        if (eventIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, ConfirmedCountDto> counts = requestRepository.findConfirmedCounts(eventIds).stream()
+                .collect(Collectors.toMap(ConfirmedCountDto::getEventId, Function.identity()));
+        // Событие без строки счётчика ещё не имело подтверждённых заявок
+        return eventIds.stream()
+                .distinct()
+                .map(id -> counts.getOrDefault(id, new ConfirmedCountDto(id, 0, 0)))
+                .toList();
     }
 
     @Override
@@ -206,15 +295,16 @@ public class RequestServiceImpl implements RequestService {
 
     private void handleRejectedRequests(List<Request> foundRequests, EventRequestStatusUpdateResult result, List<ParticipationRequestDto> rejected) {
         for (Request request : foundRequests) {
-            request.setStatus(RequestStatus.REJECTED);
-            rejected.add(requestMapper.toDto(request));
+            ParticipationRequestDto dto = requestMapper.toDto(request);
+            dto.setStatus(RequestStatus.REJECTED);
+            rejected.add(dto);
         }
         List<Long> rejectedRequestIds = rejected.stream().map(ParticipationRequestDto::getId).toList();
-        updateStatus(RequestStatus.REJECTED, rejectedRequestIds);
+        changePendingStatus(RequestStatus.REJECTED, rejectedRequestIds);
     }
 
     private UserShortDto getUserById(Long userId) {
-        UserShortDto user = userServiceClient.getUserById(userId).getBody();
+        UserShortDto user = userCache.get(userId);
         if (user == null) {
             throw new NotFoundException("Пользователь не найден с id: " + userId);
         }
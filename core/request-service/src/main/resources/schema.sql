@@ -6,4 +6,23 @@ CREATE TABLE IF NOT EXISTS requests (
     status VARCHAR(50) NOT NULL,
     CONSTRAINT pk_requests PRIMARY KEY (id),
     CONSTRAINT uq_requests UNIQUE (user_id, event_id)
-);
\ No newline at end of file
+);
+
+-- Число подтверждённых заявок по событию, меняется вместе со статусами заявок.
+-- Места в событии с лимитом занимаются условным UPDATE этой строки, поэтому лимит не превышается
+-- и при параллельных подтверждениях.
+-- version растёт с каждым изменением: по нему кеш event-service отличает новое значение от устаревшего
+CREATE TABLE IF NOT EXISTS confirmed_counts (
+    event_id BIGINT NOT NULL,
+    confirmed INTEGER NOT NULL,
+    version BIGINT NOT NULL,
+    CONSTRAINT pk_confirmed_counts PRIMARY KEY (event_id)
+);
+
+-- Заполнение для заявок, подтверждённых до появления счётчика; уже посчитанные события не трогаются
+INSERT INTO confirmed_counts (event_id, confirmed, version)
+SELECT event_id, COUNT(*), 1
+FROM requests
+WHERE status = 'CONFIRMED'
+GROUP BY event_id
+ON CONFLICT (event_id) DO NOTHING;
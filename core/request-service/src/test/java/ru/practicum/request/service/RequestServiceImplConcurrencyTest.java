@@ -0,0 +1,220 @@
+package ru.practicum.request.service;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.client.CollectorClient;
+import ru.practicum.event.dto.EventFullDto;
+import ru.practicum.event.dto.State;
+import ru.practicum.event.feign.EventServiceClient;
+import ru.practicum.exception.ConditionsNotMetException;
+import ru.practicum.request.dto.EventRequestStatusUpdateRequest;
+import ru.practicum.request.dto.RequestStatus;
+import ru.practicum.request.mapper.RequestMapperImpl;
+import ru.practicum.request.model.Request;
+import ru.practicum.request.repository.ConfirmedCountRepositoryImpl;
+import ru.practicum.request.repository.RequestRepository;
+import ru.practicum.request.repository.RequestStatusRepositoryImpl;
+import ru.practicum.user.cache.UserCache;
+import ru.practicum.user.dto.UserShortDto;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Параллельные подтверждения и отмены одной заявки на настоящем PostgreSQL: число подтверждённых заявок
+ * в confirmed_counts должно совпадать с числом заявок в статусе CONFIRMED.
+ */
+class RequestServiceImplConcurrencyTest {
+    static final long EVENT_ID = 1;
+    static final long INITIATOR_ID = 1;
+    static final int ROUNDS = 50;
+    static final RowMapper<Request> REQUEST_ROW_MAPPER = (rs, rowNum) -> Request.builder()
+            .id(rs.getLong("id"))
+            .userId(rs.getLong("user_id"))
+            .eventId(rs.getLong("event_id"))
+            .created(rs.getTimestamp("created").toLocalDateTime())
+            .status(RequestStatus.valueOf(rs.getString("status")))
+            .build();
+
+    static EmbeddedPostgres postgres;
+    static NamedParameterJdbcTemplate jdbcTemplate;
+    static TransactionTemplate transactionTemplate;
+
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+    RequestServiceImpl requestService;
+
+    @BeforeAll
+    static void startPostgres() throws IOException {
+        postgres = EmbeddedPostgres.start();
+        DataSource dataSource = postgres.getPostgresDatabase();
+        new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+        jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @AfterAll
+    static void stopPostgres() throws IOException {
+        postgres.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("TRUNCATE requests, confirmed_counts", Map.of());
+
+        EventServiceClient eventServiceClient = mock(EventServiceClient.class);
+        when(eventServiceClient.getEventById(EVENT_ID)).thenReturn(EventFullDto.builder()
+                .id(EVENT_ID)
+                .initiator(new UserShortDto(INITIATOR_ID, "initiator"))
+                .state(State.PUBLISHED)
+                .participantLimit(ROUNDS * 2)
+                .requestModeration(true)
+                .build());
+        requestService = new RequestServiceImpl(eventServiceClient, requestRepository(), new RequestMapperImpl(),
+                mock(UserCache.class), mock(CollectorClient.class), mock(ConfirmedCountPublisher.class),
+                transactionTemplate);
+    }
+
+    @Test
+    void concurrentConfirmationsConfirmOnce() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            long requestId = insertPendingRequest(round);
+            race(() -> confirm(requestId), () -> confirm(requestId));
+            assertEquals(round + 1, countConfirmed());
+            assertConfirmedCountMatchesRequests();
+        }
+    }
+
+    @Test
+    void concurrentCancelsReleaseSeatOnce() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            long userId = round;
+            long requestId = insertPendingRequest(userId);
+            confirm(requestId);
+            race(() -> cancel(userId, requestId), () -> cancel(userId, requestId));
+            assertEquals(RequestStatus.CANCELED, findStatus(requestId));
+            assertConfirmedCountMatchesRequests();
+        }
+    }
+
+    @Test
+    void concurrentConfirmationAndCancelKeepCountInSync() throws Exception {
+        for (int round = 0; round < ROUNDS; round++) {
+            long userId = round;
+            long requestId = insertPendingRequest(userId);
+            race(() -> confirm(requestId), () -> cancel(userId, requestId));
+            assertEquals(RequestStatus.CANCELED, findStatus(requestId));
+            assertConfirmedCountMatchesRequests();
+        }
+    }
+
+    private RequestRepository requestRepository() {
+        ConfirmedCountRepositoryImpl counts = new ConfirmedCountRepositoryImpl(jdbcTemplate);
+        RequestStatusRepositoryImpl statuses = new RequestStatusRepositoryImpl(jdbcTemplate);
+        RequestRepository repository = mock(RequestRepository.class);
+        when(repository.findById(anyLong())).thenAnswer(invocation ->
+                findRequests(List.of(invocation.<Long>getArgument(0))).stream().findFirst());
+        when(repository.findAllById(anyIterable())).thenAnswer(invocation -> findRequests(
+                StreamSupport.stream(invocation.<Iterable<Long>>getArgument(0).spliterator(), false).toList()));
+        when(repository.changeStatus(anyCollection(), any(), any())).thenAnswer(invocation ->
+                statuses.changeStatus(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2)));
+        when(repository.cancel(anyLong())).thenAnswer(invocation -> statuses.cancel(invocation.getArgument(0)));
+        when(repository.addConfirmed(anyLong(), anyInt())).thenAnswer(invocation ->
+                counts.addConfirmed(invocation.getArgument(0), invocation.getArgument(1)));
+        when(repository.reserveConfirmed(anyLong(), anyInt(), anyInt())).thenAnswer(invocation ->
+                counts.reserveConfirmed(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2)));
+        when(repository.findConfirmedCounts(anyCollection())).thenAnswer(invocation ->
+                counts.findConfirmedCounts(invocation.getArgument(0)));
+        return repository;
+    }
+
+    private void confirm(long requestId) {
+        EventRequestStatusUpdateRequest updateRequest = new EventRequestStatusUpdateRequest();
+        updateRequest.setRequestIds(List.of(requestId));
+        updateRequest.setStatus(EventRequestStatusUpdateRequest.Status.CONFIRMED);
+        requestService.changeEventRequestsStatusByInitiator(updateRequest, INITIATOR_ID, EVENT_ID);
+    }
+
+    private void cancel(long userId, long requestId) {
+        // Без прокси @Transactional метода не действует, транзакцию открывает тест
+        transactionTemplate.executeWithoutResult(status -> requestService.cancelParticipantRequest(userId, requestId));
+    }
+
+    /**
+     * Запускает оба действия одновременно; проигравшее гонку может отказать с ConditionsNotMetException.
+     */
+    private void race(Runnable first, Runnable second) throws InterruptedException, ExecutionException {
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        List<Future<?>> futures = List.of(executor.submit(() -> runAfter(barrier, first)),
+                executor.submit(() -> runAfter(barrier, second)));
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+    private void runAfter(CyclicBarrier barrier, Runnable action) {
+        try {
+            barrier.await();
+            action.run();
+        } catch (ConditionsNotMetException ignored) {
+            // Заявка уже не в ожидании
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private long insertPendingRequest(long userId) {
+        return jdbcTemplate.queryForObject("""
+                INSERT INTO requests (user_id, event_id, created, status)
+                VALUES (:userId, :eventId, now(), 'PENDING')
+                RETURNING id
+                """, Map.of("userId", userId, "eventId", EVENT_ID), Long.class);
+    }
+
+    private List<Request> findRequests(List<Long> ids) {
+        return jdbcTemplate.query("SELECT * FROM requests WHERE id IN (:ids)", Map.of("ids", ids), REQUEST_ROW_MAPPER);
+    }
+
+    private RequestStatus findStatus(long requestId) {
+        return findRequests(List.of(requestId)).getFirst().getStatus();
+    }
+
+    private int countConfirmed() {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM requests WHERE event_id = :eventId AND status = 'CONFIRMED'",
+                Map.of("eventId", EVENT_ID), Integer.class);
+    }
+
+    private void assertConfirmedCountMatchesRequests() {
+        int ledger = Optional.ofNullable(jdbcTemplate.queryForObject(
+                "SELECT SUM(confirmed) FROM confirmed_counts WHERE event_id = :eventId",
+                Map.of("eventId", EVENT_ID), Integer.class)).orElse(0);
+        assertEquals(countConfirmed(), ledger);
+    }
+}
@@ -5,10 +5,15 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import org.springframework.cloud.client.discovery.EnableDiscoveryClient;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
 
 
 
-@SpringBootApplication(scanBasePackages = "ru.practicum.user")
+@SpringBootApplication
+// Кеш пользователей из interaction-api нужен сервисам, которые ходят в user-service, а не ему самому
+@ComponentScan(basePackages = "ru.practicum.user",
+        excludeFilters = @ComponentScan.Filter(type = FilterType.REGEX, pattern = "ru\\.practicum\\.user\\.cache\\..*"))
 @EnableDiscoveryClient
 @ConfigurationPropertiesScan
 public class UserServiceApp {
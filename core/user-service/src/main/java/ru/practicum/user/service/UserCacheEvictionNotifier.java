@@ -0,0 +1,43 @@
+package ru.practicum.user.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.stereotype.Component;
+import ru.practicum.broadcast.AfterCommitBroadcaster;
+
+/**
+ * Сообщает сервисам, которые кешируют пользователей, об удалении пользователя.
+ * <p>
+ * Уведомление отправляется каждому экземпляру после фиксации транзакции через {@link AfterCommitBroadcaster};
+ * экземпляр, который его не получил, забудет пользователя по истечении TTL своего кеша.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class UserCacheEvictionNotifier {
+    final DiscoveryClient discoveryClient;
+    final UserCacheEvictionProperties properties;
+    AfterCommitBroadcaster broadcaster;
+
+    @PostConstruct
+    public void init() {
+        broadcaster = new AfterCommitBroadcaster(discoveryClient, properties.getServices(), properties.getTimeoutMs());
+    }
+
+    public void userDeleted(Long userId) {
+        broadcaster.broadcastAfterCommit("сброс пользователя " + userId + " из кеша", (restClient, instance) ->
+                restClient.delete()
+                        .uri(instance.getUri() + "/internal/users/cache/{userId}", userId)
+                        .retrieve()
+                        .toBodilessEntity());
+    }
+
+    @PreDestroy
+    public void stop() {
+        broadcaster.stop();
+    }
+}
@@ -26,6 +26,7 @@ import java.util.stream.Collectors;
 public class UserServiceImpl implements UserService {
 
     private final UserRepository userRepository;
+    private final UserCacheEvictionNotifier userCacheEvictionNotifier;
 
     /**
      * Возвращает список пользователей с учетом параметров фильтрации и пагинации.
@@ -87,6 +88,7 @@ public class UserServiceImpl implements UserService {
         }
         log.info("Удаление пользователя с id: {}", id);
         userRepository.deleteById(id);
+        userCacheEvictionNotifier.userDeleted(id);
     }
 
     /**
@@ -23,7 +23,29 @@ public class AggregationProcessor {
         long eventId = action.getEventId();
         double weight = getActionWeight(action.getActionType());
 
-        return matrix.updateWeights(userId, eventId, weight);
+        return matrix.updateWeights(userId, eventId, weight, action.getTimestamp().toEpochMilli());
+    }
+
+    public boolean isHeavyUser(long userId) {
+        return matrix.isHeavyUser(userId);
+    }
+
+    public boolean isSweepDue() {
+        return matrix.isSweepDue();
+    }
+
+    /**
+     * Вытесняет затухшие веса и возвращает пересчитанные сходства затронутых пар, нулевые — для удалённых.
+     */
+    public List<EventSimilarityAvro> evictCold() {
+        return matrix.evictCold();
+    }
+
+    /**
+     * Сбрасывает состояние расчёта перед его повторной загрузкой.
+     */
+    public void reset() {
+        matrix.reset();
     }
 
     private double getActionWeight(ActionTypeAvro type) {
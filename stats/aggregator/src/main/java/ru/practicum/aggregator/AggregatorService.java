@@ -7,28 +7,66 @@ import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.AuthorizationException;
+import org.apache.kafka.common.errors.OutOfOrderSequenceException;
+import org.apache.kafka.common.errors.ProducerFencedException;
 import org.apache.kafka.common.errors.WakeupException;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.stereotype.Service;
+import ru.practicum.aggregator.state.SimilarityStateStore;
 import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
 import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.exception.SendMessageException;
 import ru.practicum.producer.KafkaProducerService;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Читает действия пользователей, пересчитывает сходство мероприятий и отправляет новые значения.
+ * <p>
+ * Агрегатор работает в одном экземпляре. Сходство пары зависит от сумм весов мероприятий по всем пользователям,
+ * поэтому экземпляр, которому досталась только часть партиций, посчитал бы его неверно.
+ * Второй экземпляр в той же группе не обрабатывает ничего: пока экземпляру назначены не все партиции
+ * входного топика, они приостановлены, и он лишь ждёт, когда получит все, например, после остановки прежнего
+ * экземпляра при выкладке. Если партиции в это время были у другого экземпляра, состояние в памяти устарело:
+ * при возврате всех партиций оно загружается заново из снимка, и топик дочитывается с позиций снимка.
+ */
 @Service
 @RequiredArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @Slf4j
 public class AggregatorService {
 
+    static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
     final AggregationProcessor processor;
     final KafkaConsumer<String, SpecificRecordBase> consumer;
     final KafkaProducerService kafkaProducer;
+    final SimilarityStateStore stateStore;
+    final SimilarityCoalescer coalescer;
+    final ConfigurableApplicationContext context;
 
     @Value("${kafka.topics.user-actions}")
     String inputTopic;
@@ -39,13 +77,34 @@ public class AggregatorService {
     @Value("${kafka.consumer.poll_timeout}")
     long pollTimeout;
 
+    @Value("${aggregator.worker-threads:4}")
+    int workerThreads;
+
     final ExecutorService executor = Executors.newSingleThreadExecutor();
+    // Однопоточные исполнители: все записи партиции обрабатываются одним потоком и по порядку
+    final List<ExecutorService> workers = new ArrayList<>();
     volatile boolean running = true;
+    // Producer не может продолжать работу: повторная фиксация бессмысленна, приложение останавливается
+    volatile boolean failed;
+    // Экземпляру назначены все партиции входного топика, и их записи обрабатываются
+    boolean active;
+    // Позиции под загруженное состояние, которые нужно выставить при назначении всех партиций; null — уже выставлены
+    Map<TopicPartition, Long> pendingPositions;
+    // Партиции могли обрабатываться другим экземпляром: состояние перезагружается при возврате всех партиций
+    boolean stateStale;
+    // Есть обработанные, но ещё не зафиксированные записи
+    boolean uncommitted;
 
     @PostConstruct
     public void start() {
+        for (int i = 0; i < workerThreads; i++) {
+            workers.add(Executors.newSingleThreadExecutor());
+        }
+        if (stateStore.isEnabled()) {
+            pendingPositions = stateStore.restore();
+        }
         log.info("Подписка consumer на топик {}", inputTopic);
-        consumer.subscribe(List.of(inputTopic));
+        consumer.subscribe(List.of(inputTopic), new SingleOwnerRebalanceListener());
         executor.submit(this::processMessages);
     }
 
@@ -53,28 +112,288 @@ public class AggregatorService {
     public void stop() {
         running = false;
         consumer.wakeup();
-        kafkaProducer.flush();
         executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Цикл обработки не завершился за {} с", SHUTDOWN_TIMEOUT_SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.forEach(ExecutorService::shutdown);
+        if (!failed) {
+            kafkaProducer.flush();
+        }
     }
 
     private void processMessages() {
         while (running) {
             try {
                 var records = consumer.poll(Duration.ofMillis(pollTimeout));
-                for (var record : records) {
-                    if (record.value() instanceof UserActionAvro userAction) {
-                        List<EventSimilarityAvro> result = processor.process(userAction);
-                        result.forEach(sim -> kafkaProducer.send(sim, outputTopic));
+                processPartitions(records);
+                uncommitted |= !records.isEmpty();
+                if (active && processor.isSweepDue()) {
+                    // Воркеры закончили пачку: проход не конкурирует с обработкой за блокировки
+                    coalescer.add(processor.evictCold());
+                }
+                if (coalescer.isFlushDue()) {
+                    flushAndCommit();
+                    if (active && !uncommitted && stateStore.isSnapshotDue()) {
+                        stateStore.snapshot(currentPositions());
                     }
                 }
-                if (!records.isEmpty()) consumer.commitSync();
-                kafkaProducer.flush();
             } catch (WakeupException e) {
                 if (!running) break;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
             } catch (Exception e) {
                 log.error("Ошибка в цикле обработки", e);
             }
         }
+        if (failed) {
+            shutdownAfterFatalError();
+            return;
+        }
+        // Финальная отправка и снимок на остановке, чтобы следующий старт дочитывал минимальный хвост
+        try {
+            flushAndCommit();
+            if (active && !uncommitted) {
+                stateStore.snapshot(currentPositions());
+            }
+        } catch (Exception e) {
+            log.error("Ошибка завершения обработки при остановке", e);
+        }
     }
-}
 
+    /**
+     * Закрывает consumer и producer и останавливает приложение с ненулевым кодом, чтобы его перезапустил оркестратор.
+     * Накопленные значения и снимок не сохраняются: после перезапуска топик дочитывается с последних
+     * зафиксированных смещений и позиций снимка, и эти значения будут рассчитаны заново.
+     * Остановка контекста ждёт завершения цикла обработки, поэтому запускается из отдельного потока.
+     */
+    private void shutdownAfterFatalError() {
+        try {
+            consumer.close(Duration.ZERO);
+        } catch (Exception e) {
+            log.error("Ошибка при закрытии consumer", e);
+        }
+        kafkaProducer.close();
+        new Thread(() -> System.exit(SpringApplication.exit(context, () -> 1)), "aggregator-shutdown").start();
+    }
+
+    /**
+     * Отправляет накопленные за окно значения сходства и только после этого фиксирует смещения.
+     * Снимок состояния пишется только после успешной фиксации, поэтому после восстановления из него
+     * будут заново рассчитаны все обновления, которые не успели уйти в топик.
+     */
+    private void flushAndCommit() {
+        List<EventSimilarityAvro> similarities = coalescer.drain();
+        if (kafkaProducer.isTransactional()) {
+            commitTransaction(similarities);
+            return;
+        }
+        for (EventSimilarityAvro similarity : similarities) {
+            kafkaProducer.send(SimilarityCoalescer.recordKey(similarity), similarity, outputTopic);
+        }
+        kafkaProducer.flush();
+        if (uncommitted) {
+            consumer.commitSync();
+            uncommitted = false;
+        }
+    }
+
+    /**
+     * Отправляет окно и смещения consumer'а одной транзакцией: либо видны и новые значения сходства,
+     * и прогресс чтения, либо ни то, ни другое.
+     * При прерванной транзакции значения возвращаются в буфер и уйдут со следующим окном:
+     * повторное чтение входного топика их бы не восстановило, так как состояние калькулятора уже обновлено.
+     */
+    private void commitTransaction(List<EventSimilarityAvro> similarities) {
+        if (similarities.isEmpty() && !uncommitted) {
+            return;
+        }
+        try {
+            kafkaProducer.beginTransaction();
+            for (EventSimilarityAvro similarity : similarities) {
+                kafkaProducer.send(SimilarityCoalescer.recordKey(similarity), similarity, outputTopic);
+            }
+            kafkaProducer.commitTransaction(currentOffsets(), consumer.groupMetadata());
+            uncommitted = false;
+        } catch (ProducerFencedException | OutOfOrderSequenceException | AuthorizationException e) {
+            // Producer больше не может работать: его сменил другой экземпляр или нарушена последовательность
+            log.error("Фатальная ошибка транзакции, агрегатор будет остановлен", e);
+            failed = true;
+            running = false;
+            throw e;
+        } catch (KafkaException | SendMessageException e) {
+            log.warn("Транзакция прервана, {} значений будут отправлены повторно", similarities.size(), e);
+            kafkaProducer.abortTransaction();
+            coalescer.add(similarities);
+        }
+    }
+
+    /**
+     * Раздаёт записи пачки по партициям воркерам и дожидается окончания обработки всей пачки.
+     * Действия ключуются по userId, поэтому у каждой партиции свой непересекающийся набор пользователей,
+     * а общие для партиций суммы по мероприятиям и парам защищены блокировками калькулятора.
+     * Все партиции обрабатываются этим экземпляром, поэтому суммы учитывают всех пользователей.
+     * Смещения фиксируются только после того, как все воркеры закончили пачку и накопленные значения отправлены.
+     */
+    private void processPartitions(ConsumerRecords<String, SpecificRecordBase> records)
+            throws InterruptedException, ExecutionException {
+        List<Future<?>> tasks = new ArrayList<>(records.partitions().size());
+        for (TopicPartition partition : records.partitions()) {
+            List<ConsumerRecord<String, SpecificRecordBase>> batch = records.records(partition);
+            tasks.add(workerFor(partition).submit(() -> processPartition(batch)));
+        }
+        for (Future<?> task : tasks) {
+            task.get();
+        }
+    }
+
+    /**
+     * Действия тяжёлых пользователей воркер откладывает до конца пачки партиции, чтобы сначала обновились
+     * пары остальных пользователей. Пока пользователь тяжёлый, откладываются все его действия,
+     * поэтому они по-прежнему выполняются по порядку.
+     */
+    private void processPartition(List<ConsumerRecord<String, SpecificRecordBase>> batch) {
+        List<UserActionAvro> deferred = new ArrayList<>();
+        for (ConsumerRecord<String, SpecificRecordBase> record : batch) {
+            try {
+                if (record.value() instanceof UserActionAvro userAction) {
+                    if (processor.isHeavyUser(userAction.getUserId())) {
+                        deferred.add(userAction);
+                    } else {
+                        coalescer.add(processor.process(userAction));
+                    }
+                }
+            } catch (Exception e) {
+                log.error("Ошибка обработки действия {} из партиции {}", record.value(), record.partition(), e);
+            }
+        }
+        if (!deferred.isEmpty()) {
+            processHeavyUserActions(deferred);
+        }
+    }
+
+    private void processHeavyUserActions(List<UserActionAvro> actions) {
+        log.debug("Обработка {} отложенных действий тяжёлых пользователей", actions.size());
+        for (UserActionAvro action : actions) {
+            try {
+                coalescer.add(processor.process(action));
+            } catch (Exception e) {
+                log.error("Ошибка обработки действия тяжёлого пользователя {}", action, e);
+            }
+        }
+    }
+
+    private ExecutorService workerFor(TopicPartition partition) {
+        return workers.get(Math.floorMod(partition.partition(), workers.size()));
+    }
+
+    private Map<TopicPartition, OffsetAndMetadata> currentOffsets() {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        currentPositions().forEach((partition, position) -> offsets.put(partition, new OffsetAndMetadata(position)));
+        return offsets;
+    }
+
+    private Map<TopicPartition, Long> currentPositions() {
+        Map<TopicPartition, Long> positions = new HashMap<>();
+        for (TopicPartition partition : consumer.assignment()) {
+            positions.put(partition, consumer.position(partition));
+        }
+        return positions;
+    }
+
+    /**
+     * Допускает обработку, только пока экземпляру назначены все партиции входного топика.
+     * При первом назначении всех партиций выставляет позицию чтения под загруженное состояние:
+     * на позицию из снимка или, если снимка для партиции нет, на начало топика.
+     * Состояние в памяти всегда соответствует ровно тем действиям, что прочитаны до текущих позиций:
+     * снимок пишется вместе с позициями, на которых он сделан, а устаревшее состояние заменяется снимком
+     * перед тем, как выставляются его позиции. Повторно учитывать уже учтённые действия нельзя:
+     * с окном мероприятий и затуханием состояние зависит от порядка и числа действий.
+     * <p>
+     * Ребалансировка вызывается из poll, то есть между пачками: воркеры к этому моменту закончили работу.
+     * При отзыве накопленные значения отправляются и смещения фиксируются. Если после этого экземпляру
+     * назначена только часть партиций, они приостанавливаются до следующей ребалансировки, а состояние
+     * считается устаревшим.
+     */
+    private class SingleOwnerRebalanceListener implements ConsumerRebalanceListener {
+        @Override
+        public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+            if (active) {
+                log.info("Отзыв партиций {}, отправка накопленных значений и фиксация смещений", partitions);
+                flushAndCommit();
+            }
+            active = false;
+        }
+
+        @Override
+        public void onPartitionsLost(Collection<TopicPartition> partitions) {
+            // Смещения уже не зафиксировать: партиции могли достаться другому экземпляру
+            log.warn("Партиции {} потеряны, накопленные значения отброшены, состояние будет перезагружено", partitions);
+            active = false;
+            stateStale = true;
+            uncommitted = false;
+            coalescer.drain();
+        }
+
+        @Override
+        public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+            Set<TopicPartition> assignment = consumer.assignment();
+            Set<TopicPartition> all = allPartitions();
+            if (!assignment.containsAll(all)) {
+                log.warn("Назначены партиции {} из {}: в группе {} есть другой экземпляр агрегатора. "
+                                + "Агрегатор работает в одном экземпляре, обработка приостановлена до получения всех партиций",
+                        assignment, all.size(), consumer.groupMetadata().groupId());
+                consumer.pause(assignment);
+                active = false;
+                stateStale = true;
+                return;
+            }
+            if (stateStale) {
+                reloadState();
+            }
+            if (pendingPositions != null) {
+                seekTo(pendingPositions, assignment);
+                pendingPositions = null;
+            }
+            consumer.resume(assignment);
+            active = true;
+        }
+
+        /**
+         * Заменяет устаревшее состояние снимком, а без хранилища снимков — пустым состоянием,
+         * которое заново строится из топика с начала.
+         */
+        private void reloadState() {
+            log.info("Партиции могли обрабатываться другим экземпляром, состояние загружается заново");
+            processor.reset();
+            pendingPositions = stateStore.isEnabled() ? stateStore.restore() : Map.of();
+            stateStale = false;
+        }
+
+        private void seekTo(Map<TopicPartition, Long> positions, Set<TopicPartition> assignment) {
+            for (TopicPartition partition : assignment) {
+                Long offset = positions.get(partition);
+                if (offset != null) {
+                    log.info("Партиция {}: дочитывание с позиции снимка {}", partition, offset);
+                    consumer.seek(partition, offset);
+                } else {
+                    log.info("Партиция {} отсутствует в снимке, чтение с начала", partition);
+                    consumer.seekToBeginning(List.of(partition));
+                }
+            }
+        }
+
+        private Set<TopicPartition> allPartitions() {
+            Set<TopicPartition> partitions = new HashSet<>();
+            for (PartitionInfo info : consumer.partitionsFor(inputTopic)) {
+                partitions.add(new TopicPartition(info.topic(), info.partition()));
+            }
+            return partitions;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package ru.practicum.aggregator;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "aggregator.decay")
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Getter
+@Setter
+public class DecayProperties {
+    // Без затухания веса только растут и никогда не вытесняются, как раньше
+    boolean enabled = false;
+    // За это время вес действия уменьшается вдвое, отсчёт по времени действия
+    long halfLifeMs = 7L * 24 * 60 * 60 * 1000;
+    // Веса и суммы пар, затухшие ниже этого значения, вытесняются из состояния
+    double evictionThreshold = 0.01;
+    // Как часто проходить по состоянию в поисках затухших весов
+    long sweepIntervalMs = 60_000;
+}
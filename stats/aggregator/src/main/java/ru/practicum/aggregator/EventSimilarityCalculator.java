@@ -3,205 +3,781 @@ package ru.practicum.aggregator;
 import lombok.AccessLevel;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import ru.practicum.aggregator.state.Hashing;
+import ru.practicum.aggregator.state.LongArrayList;
+import ru.practicum.aggregator.state.LongDoubleHashMap;
+import ru.practicum.aggregator.state.LongObjectHashMap;
 import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Состояние для расчёта сходства мероприятий.
+ * <p>
+ * Всё состояние хранится в примитивных хеш-таблицах (long → double, long → объект) без упаковки
+ * в Long/Double, а суммы минимальных весов лежат в одной таблице на полосу по упакованному ключу пары.
+ * Состояние разбито на {@link #STRIPES} полос, каждая защищена своей блокировкой:
+ * мероприятия и пары — по ID мероприятия (для пары — по меньшему ID), списки мероприятий пользователя — по ID пользователя.
+ * Действия одного пользователя выполняются последовательно под блокировкой его полосы,
+ * блокировки мероприятий берутся по одной и никогда не вкладываются друг в друга.
+ * <p>
+ * С включённым затуханием вес действия экспоненциально уменьшается со временем действия.
+ * Чтобы не пересчитывать состояние при каждом сдвиге времени, хранится вес, приведённый к опорной точке:
+ * w·exp(λ(t − опорная точка)). Общий множитель сокращается в формуле сходства, поэтому значения сходства точны
+ * без пересчёта, а сравнение максимумов и минимумов весов даёт тот же результат, что и для затухших весов.
+ * Когда приведённые веса растут слишком сильно, опорная точка переносится и всё состояние масштабируется.
+ * Затухшие веса периодически вытесняются {@link #evictCold()}, а для опустевших пар отправляется нулевое сходство.
+ * <p>
+ * С ограничением веерности у пользователя учитываются только maxUserEvents мероприятий, с которыми он
+ * взаимодействовал последними. Мероприятие, выпавшее из окна, вытесняется так же, как затухший вес,
+ * поэтому на одно действие приходится не больше O(maxUserEvents) обновлений пар независимо от истории пользователя.
+ */
 @Component
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @Slf4j
 public class EventSimilarityCalculator {
-    // Карта: ID мероприятия → (ID пользователя → максимальный вес действия)
-    final Map<Long, Map<Long, Double>> eventUserWeights = new ConcurrentHashMap<>();
-    // Карта: ID мероприятия → сумма всех весов пользователей
-    final Map<Long, Double> eventTotalWeights = new ConcurrentHashMap<>();
-    // Карта: ID мероприятия A → (ID мероприятия B → сумма минимальных весов общих пользователей)
-    final Map<Long, Map<Long, Double>> minWeightsSums = new ConcurrentHashMap<>();
-    // Карта: ID пользователя → список ID мероприятий, с которыми он взаимодействовал
-    final Map<Long, List<Long>> userEvents = new ConcurrentHashMap<>();
+    // Количество полос блокировок, степень двойки
+    static final int STRIPES = 64;
+    // Признак отсутствия веса: реальные веса действий всегда положительны
+    static final double ABSENT = -1.0;
+    // Упаковка пары в один long допускает ID мероприятий не больше 32 бит
+    static final long MAX_EVENT_ID = 0xFFFF_FFFFL;
+    // Показатель экспоненты приведённого веса, после которого переносится опорная точка: exp(100) далёк от переполнения
+    static final double REBASE_EXPONENT = 100.0;
+    static final long NO_TIME = Long.MIN_VALUE;
 
-    public List<EventSimilarityAvro> updateWeights(long userId, long eventId, double newWeight) {
-        if (!eventUserWeights.containsKey(eventId)) {
-            return handleNewEvent(userId, eventId, newWeight);
+    // Полоса по ID мероприятия: ID мероприятия → (ID пользователя → максимальный вес действия, сумма весов)
+    final LongObjectHashMap<EventWeights>[] eventUserWeights;
+    // Полоса по меньшему ID пары: упакованная пара (A, B) → сумма минимальных весов общих пользователей
+    final LongDoubleHashMap[] minWeightsSums;
+    final ReentrantLock[] eventLocks;
+    // Полоса по ID пользователя: ID пользователя → список ID мероприятий, с которыми он взаимодействовал
+    final LongObjectHashMap<LongArrayList>[] userEvents;
+    final ReentrantLock[] userLocks;
+
+    // Скорость затухания λ = ln 2 / период полураспада, 0 — затухание выключено
+    final double decayRate;
+    final double evictionThreshold;
+    final long sweepIntervalMs;
+    // Время, к которому приведены все веса; меняется только под всеми блокировками
+    volatile long landmark = NO_TIME;
+    // Наибольшее время среди обработанных действий: затухание отсчитывается от него, а не от часов сервера
+    final AtomicLong watermark = new AtomicLong(NO_TIME);
+    volatile long lastSweepAt = System.currentTimeMillis();
+    // Размер окна последних мероприятий пользователя, 0 — без ограничения
+    final int maxUserEvents;
+
+    public EventSimilarityCalculator() {
+        this(new DecayProperties(), new FanoutProperties());
+    }
+
+    @Autowired
+    @SuppressWarnings("unchecked")
+    public EventSimilarityCalculator(DecayProperties decay, FanoutProperties fanout) {
+        maxUserEvents = fanout.getMaxUserEvents();
+        decayRate = decay.isEnabled() ? Math.log(2) / decay.getHalfLifeMs() : 0.0;
+        evictionThreshold = decay.getEvictionThreshold();
+        sweepIntervalMs = decay.getSweepIntervalMs();
+        eventUserWeights = new LongObjectHashMap[STRIPES];
+        minWeightsSums = new LongDoubleHashMap[STRIPES];
+        eventLocks = new ReentrantLock[STRIPES];
+        userEvents = new LongObjectHashMap[STRIPES];
+        userLocks = new ReentrantLock[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            eventUserWeights[i] = new LongObjectHashMap<>();
+            minWeightsSums[i] = new LongDoubleHashMap();
+            eventLocks[i] = new ReentrantLock();
+            userEvents[i] = new LongObjectHashMap<>();
+            userLocks[i] = new ReentrantLock();
         }
+    }
 
-        Map<Long, Double> eventUsers = eventUserWeights.get(eventId);
-        if (!eventUsers.containsKey(userId)) {
-            return handleNewUserForEvent(userId, eventId, newWeight);
+    /**
+     * Учитывает действие пользователя с мероприятием, совершённое сейчас.
+     *
+     * @param weight вес действия
+     * @return новые значения сходства затронутых пар
+     */
+    public List<EventSimilarityAvro> updateWeights(long userId, long eventId, double weight) {
+        return updateWeights(userId, eventId, weight, System.currentTimeMillis());
+    }
+
+    /**
+     * Учитывает действие пользователя с мероприятием.
+     *
+     * @param weight    вес действия
+     * @param timestamp время действия в миллисекундах, от него отсчитывается затухание
+     * @return новые значения сходства затронутых пар
+     */
+    public List<EventSimilarityAvro> updateWeights(long userId, long eventId, double weight, long timestamp) {
+        checkEventId(eventId);
+        if (decayRate != 0) {
+            watermark.accumulateAndGet(timestamp, Math::max);
+            if (landmark == NO_TIME || decayRate * (timestamp - landmark) > REBASE_EXPONENT) {
+                // Блокировки всех полос нельзя брать, удерживая блокировку пользователя
+                rebase(timestamp);
+            }
+        }
+        ReentrantLock userLock = userLocks[stripe(userId)];
+        userLock.lock();
+        try {
+            // Под блокировкой пользователя опорная точка не меняется
+            double newWeight = decayed(weight, timestamp);
+            if (decayRate != 0 && newWeight * decayToWatermark() < evictionThreshold) {
+                // Действие настолько старое, что его вес был бы вытеснен при ближайшем проходе
+                return Collections.emptyList();
+            }
+            double oldWeight = putMaxWeight(userId, eventId, newWeight);
+            LongArrayList eventIds = userEvents[stripe(userId)].computeIfAbsent(userId, k -> new LongArrayList());
+            if (oldWeight == ABSENT) {
+                // Первое взаимодействие пользователя с этим мероприятием. Окно освобождается до добавления:
+                // пары нового мероприятия с вытесняемыми ещё не посчитаны, и вычитать из них нечего
+                List<EventSimilarityAvro> trimmed = trimUserEvents(userId, eventIds, maxUserEvents - 1);
+                eventIds.add(eventId);
+                return concat(trimmed, updatePairsForUser(userId, eventId, 0.0, newWeight));
+            }
+            List<EventSimilarityAvro> trimmed = Collections.emptyList();
+            if (maxUserEvents > 0) {
+                // Повторное действие продлевает мероприятию место в окне
+                eventIds.removeValue(eventId);
+                eventIds.add(eventId);
+                trimmed = trimUserEvents(userId, eventIds, maxUserEvents);
+            }
+            if (newWeight > oldWeight) {
+                return concat(trimmed, updatePairsForUser(userId, eventId, oldWeight, newWeight));
+            }
+            return trimmed;
+        } finally {
+            userLock.unlock();
+        }
+    }
+
+    /**
+     * Пользователь заполнил окно последних мероприятий: каждое его новое мероприятие вытесняет самое давнее.
+     * Действия таких пользователей — обычно краулеров и ботов — обрабатываются после действий остальных.
+     */
+    public boolean isHeavyUser(long userId) {
+        if (maxUserEvents == 0) {
+            return false;
+        }
+        ReentrantLock userLock = userLocks[stripe(userId)];
+        userLock.lock();
+        try {
+            LongArrayList eventIds = userEvents[stripe(userId)].get(userId);
+            return eventIds != null && eventIds.size() >= maxUserEvents;
+        } finally {
+            userLock.unlock();
         }
+    }
 
-        double oldWeight = eventUsers.get(userId);
-        if (newWeight > oldWeight) {
-            return handleWeightUpdate(userId, eventId, oldWeight, newWeight);
+    /**
+     * Вытесняет самые давние мероприятия пользователя, пока их не останется limit,
+     * и возвращает пересчитанные сходства затронутых пар. Вызывается под блокировкой пользователя.
+     */
+    private List<EventSimilarityAvro> trimUserEvents(long userId, LongArrayList eventIds, int limit) {
+        if (maxUserEvents == 0 || eventIds.size() <= limit) {
+            return Collections.emptyList();
+        }
+        LongDoubleHashMap touchedPairs = new LongDoubleHashMap();
+        while (eventIds.size() > limit) {
+            evictUserEvent(userId, eventIds.get(0), eventIds, touchedPairs);
         }
+        List<EventSimilarityAvro> similarities = new ArrayList<>(touchedPairs.size());
+        double decay = decayToWatermark();
+        touchedPairs.forEach((key, ignored) -> refreshPair(key, decay, similarities));
+        return similarities;
+    }
 
-        return Collections.emptyList();
+    private static List<EventSimilarityAvro> concat(List<EventSimilarityAvro> first, List<EventSimilarityAvro> second) {
+        if (first.isEmpty()) {
+            return second;
+        }
+        first.addAll(second);
+        return first;
     }
 
     /**
+     * Записывает вес пользователя для мероприятия, если он больше сохранённого, и пересчитывает сумму весов мероприятия.
      *
-     * @param userId
-     * @param eventId
-     * @param newWeight
-     * @return
-     * Создает новую запись для мероприятия в eventUserWeights
-     *
-     * Инициализирует общую сумму весов для мероприятия
-     *
-     * Добавляет мероприятие в список мероприятий пользователя
-     *
-     * Обновляет суммы минимумов для всех пар с новым мероприятием
-     *
-     * Рассчитывает и возвращает новые значения сходства
+     * @return прежний вес или {@link #ABSENT}, если пользователь ещё не взаимодействовал с мероприятием
      */
-    private List<EventSimilarityAvro> handleNewEvent(long userId, long eventId, double newWeight) {
-        // Создаем новую запись для мероприятия
-        Map<Long, Double> newMap = new ConcurrentHashMap<>();
-        newMap.put(userId, newWeight);
-        eventUserWeights.put(eventId, newMap);
-        eventTotalWeights.put(eventId, newWeight);
-        userEvents.compute(userId, (k, events) -> {
-            if (events == null) {
-                events = new ArrayList<>();
-            }
-            events.add(eventId);
-            return events;
-        });
-        updateMinWeightsForUser(userId, eventId, 0.0, newWeight);
-        return generateSimilaritiesForUserEvents(userId, eventId);
-    }
-    // Первое взаимодействие пользователя с этим мероприятием
-    private List<EventSimilarityAvro> handleNewUserForEvent(long userId, long eventId, double newWeight) {
-       eventUserWeights.get(eventId).put(userId, newWeight);
-       eventTotalWeights.merge(eventId, newWeight, Double::sum);
-       userEvents.compute(userId, (k, events) -> {
-            if (events == null) {
-                events = new ArrayList<>();
-            }
-            events.add(eventId);
-            return events;
-        });
+    private double putMaxWeight(long userId, long eventId, double newWeight) {
+        int stripe = stripe(eventId);
+        eventLocks[stripe].lock();
+        try {
+            EventWeights event = eventUserWeights[stripe].computeIfAbsent(eventId, k -> new EventWeights());
+            double oldWeight = event.userWeights.get(userId, ABSENT);
+            if (oldWeight != ABSENT && newWeight <= oldWeight) {
+                return oldWeight;
+            }
+            event.userWeights.put(userId, newWeight);
+            event.totalWeight += oldWeight == ABSENT ? newWeight : newWeight - oldWeight;
+            return oldWeight;
+        } finally {
+            eventLocks[stripe].unlock();
+        }
+    }
+
+    /**
+     * Когда вес пользователя для мероприятия изменяется, это может повлиять на минимальные веса во всех парах,
+     * где участвует это мероприятие и данный пользователь.
+     * <p>
+     * Например, если у пользователя было: вес для A — 0.5 (старый), вес для B — 0.7, то минимум был min(0.5, 0.7) = 0.5.
+     * Если вес для A изменился на 0.8, новый минимум min(0.8, 0.7) = 0.7, и сумма минимумов для пары (A, B)
+     * должна увеличиться на 0.2.
+     * <p>
+     * Для каждой затронутой пары сразу рассчитывается новое значение сходства.
+     */
+    private List<EventSimilarityAvro> updatePairsForUser(long userId, long eventId, double oldWeight, double newWeight) {
+        LongArrayList userEventIds = userEvents[stripe(userId)].get(userId);
+        if (userEventIds == null || userEventIds.size() < 2) {
+            return Collections.emptyList();
+        }
+
+        double eventTotal = totalWeight(eventId);
+        List<EventSimilarityAvro> similarities = new ArrayList<>(userEventIds.size() - 1);
+        double[] other = new double[2];
+        for (int i = 0; i < userEventIds.size(); i++) {
+            long otherEventId = userEventIds.get(i);
+            if (otherEventId == eventId) continue;
+
+            readWeightAndTotal(otherEventId, userId, other);
+            double oldMin = Math.min(oldWeight, other[0]);
+            double newMin = Math.min(newWeight, other[0]);
+            double denominator = Math.sqrt(eventTotal) * Math.sqrt(other[1]);
+            updateMinWeightsSum(eventId, otherEventId, newMin - oldMin, denominator, similarities);
+        }
 
-        updateMinWeightsForUser(userId, eventId, 0.0, newWeight);
-        return generateSimilaritiesForUserEvents(userId, eventId);
+        similarities.sort(Comparator
+                .comparing(EventSimilarityAvro::getEventA)
+                .thenComparing(EventSimilarityAvro::getEventB));
+
+        return similarities;
     }
 
-    private List<EventSimilarityAvro> handleWeightUpdate(long userId, long eventId, double oldWeight, double newWeight) {
-        eventUserWeights.get(eventId).put(userId, newWeight);
+    // Вес пользователя для мероприятия и сумма весов мероприятия за одно взятие блокировки
+    private void readWeightAndTotal(long eventId, long userId, double[] target) {
+        int stripe = stripe(eventId);
+        eventLocks[stripe].lock();
+        try {
+            EventWeights event = eventUserWeights[stripe].get(eventId);
+            target[0] = event.userWeights.get(userId, 0.0);
+            target[1] = event.totalWeight;
+        } finally {
+            eventLocks[stripe].unlock();
+        }
+    }
 
-        double delta = newWeight - oldWeight;
-        eventTotalWeights.merge(eventId, delta, Double::sum);
-        updateMinWeightsForUser(userId, eventId, oldWeight, newWeight);
-        return generateSimilaritiesForUserEvents(userId, eventId);
+    private double totalWeight(long eventId) {
+        int stripe = stripe(eventId);
+        eventLocks[stripe].lock();
+        try {
+            return eventUserWeights[stripe].get(eventId).totalWeight;
+        } finally {
+            eventLocks[stripe].unlock();
+        }
     }
 
     /**
-     *
-     * @param userId
-     * @param eventId
-     * @param oldWeight
-     * @param newWeight
-     * Когда вес пользователя для мероприятия изменяется, это может повлиять на минимальные веса во всех парах, где участвует это мероприятие и данный пользователь.
-     *
-     * Например, если у пользователя было:
-     *
-     * Вес для мероприятия A: 0.5 (старый)
-     *
-     * Вес для мероприятия B: 0.7
-     *
-     * Минимум был min(0.5, 0.7) = 0.5
-     *
-     * Если вес для A изменился на 0.8:
-     *
-     * Новый минимум min(0.8, 0.7) = 0.7
-     *
-     * Разница: 0.7 - 0.5 = 0.2
-     *
-     * Значит, общая сумма минимумов для пары (A,B) должна увеличиться на 0.2
+     * Обновляет сумму минимальных весов (S_min) для пары мероприятий и добавляет в результат новое значение сходства.
+     * Запись сходства создаётся под блокировкой пары, поэтому при обновлении одной пары из разных потоков
+     * более позднее значение суммы всегда получает не меньшую метку времени.
      */
-    private void updateMinWeightsForUser(long userId, long eventId, double oldWeight, double newWeight) {
-        // список всех мероприятий, с которыми взаимодействовал пользователь
-        List<Long> userEventIds = userEvents.get(userId);
-        if (userEventIds == null) return;
+    private void updateMinWeightsSum(long eventA, long eventB, double delta, double denominator,
+                                     List<EventSimilarityAvro> similarities) {
+        long first = Math.min(eventA, eventB);
+        long second = Math.max(eventA, eventB);
+        int stripe = stripe(first);
+        eventLocks[stripe].lock();
+        try {
+            LongDoubleHashMap sums = minWeightsSums[stripe];
+            long key = pairKey(first, second);
+            double numerator = delta != 0 ? sums.addTo(key, delta) : sums.get(key, 0.0);
+            if (denominator == 0) {
+                return;
+            }
+            similarities.add(EventSimilarityAvro.newBuilder()
+                    .setEventA(first)
+                    .setEventB(second)
+                    .setScore(numerator / denominator)
+                    .setTimestamp(Instant.now())
+                    .build());
+        } finally {
+            eventLocks[stripe].unlock();
+        }
+    }
 
-        for (Long otherEventId : userEventIds) {
-            if (otherEventId.equals(eventId)) continue;
-            double otherWeight = eventUserWeights.get(otherEventId).get(userId);
-           double oldMin = Math.min(oldWeight, otherWeight);
-           double newMin = Math.min(newWeight, otherWeight);
-            double delta = newMin - oldMin;
+    // Вес действия, приведённый к опорной точке
+    private double decayed(double weight, long timestamp) {
+        return decayRate == 0 ? weight : weight * Math.exp(decayRate * (timestamp - landmark));
+    }
 
-            if (delta != 0) {
-                updateMinWeightsSum(eventId, otherEventId, delta);
+    // Множитель, переводящий приведённый вес в вес на момент последнего действия
+    private double decayToWatermark() {
+        return decayRate == 0 ? 1.0 : Math.exp(-decayRate * (watermark.get() - landmark));
+    }
+
+    /**
+     * Переносит опорную точку на timestamp и масштабирует под неё всё состояние.
+     * Первое действие после старта задаёт опорную точку без масштабирования.
+     */
+    private void rebase(long timestamp) {
+        lockAll();
+        try {
+            long current = landmark;
+            if (current != NO_TIME && decayRate * (timestamp - current) <= REBASE_EXPONENT) {
+                // Опорную точку уже перенёс другой поток
+                return;
+            }
+            if (current != NO_TIME) {
+                scaleAll(Math.exp(-decayRate * (timestamp - current)));
+                log.info("Опорная точка затухания перенесена на {}", Instant.ofEpochMilli(timestamp));
             }
+            landmark = timestamp;
+        } finally {
+            unlockAll();
+        }
+    }
+
+    // Вызывается под всеми блокировками
+    private void scaleAll(double factor) {
+        for (int i = 0; i < STRIPES; i++) {
+            eventUserWeights[i].forEach((eventId, event) -> {
+                event.totalWeight *= factor;
+                event.userWeights.scale(factor);
+            });
+            minWeightsSums[i].scale(factor);
         }
     }
 
-    private List<EventSimilarityAvro> generateSimilaritiesForUserEvents(long userId, long eventId) {
-        List<EventSimilarityAvro> similarities = new ArrayList<>();
-        List<Long> userEventIds = userEvents.get(userId);
-        if (userEventIds == null) return similarities;
+    public boolean isSweepDue() {
+        return decayRate != 0 && System.currentTimeMillis() - lastSweepAt >= sweepIntervalMs;
+    }
 
-        for (Long otherEventId : userEventIds) {
-            if (otherEventId.equals(eventId)) continue;
+    /**
+     * Вытесняет веса, затухшие ниже порога к моменту последнего действия.
+     * <p>
+     * Вес пользователя вычитается из суммы весов мероприятия и из сумм минимальных весов всех пар,
+     * которые пользователь образовывал с другими своими мероприятиями. Опустевшие мероприятия и пользователи удаляются.
+     * Затронутые пары пересчитываются в конце прохода: пара, сумма которой затухла ниже порога, удаляется,
+     * и для неё возвращается нулевое сходство, остальные получают новое значение.
+     * Как и при обновлении весов, сходство пар, не затронутых вытеснением, не пересчитывается
+     * при уменьшении суммы весов их мероприятий.
+     *
+     * @return новые значения сходства затронутых пар, нулевые — для удалённых
+     */
+    public List<EventSimilarityAvro> evictCold() {
+        if (decayRate == 0) {
+            return Collections.emptyList();
+        }
+        long started = System.currentTimeMillis();
+        lastSweepAt = started;
+        LongDoubleHashMap touchedPairs = new LongDoubleHashMap();
+        long evicted = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            userLocks[i].lock();
+            try {
+                evicted += evictColdUsers(i, decayToWatermark(), touchedPairs);
+            } finally {
+                userLocks[i].unlock();
+            }
+        }
 
-            double numerator = getMinWeightsSum(eventId, otherEventId);
-            double denominator = Math.sqrt(eventTotalWeights.get(eventId)) * Math.sqrt(eventTotalWeights.get(otherEventId));
+        List<EventSimilarityAvro> similarities = new ArrayList<>(touchedPairs.size());
+        int[] retracted = new int[1];
+        // Блокировка полосы пользователей не даёт перенести опорную точку, пока суммы сравниваются с порогом
+        userLocks[0].lock();
+        try {
+            double decay = decayToWatermark();
+            touchedPairs.forEach((key, ignored) -> {
+                if (refreshPair(key, decay, similarities)) {
+                    retracted[0]++;
+                }
+            });
+        } finally {
+            userLocks[0].unlock();
+        }
+        if (evicted > 0) {
+            log.info("Вытеснено затухших весов: {}, удалено пар: {}, пересчитано пар: {} за {} мс",
+                    evicted, retracted[0], similarities.size() - retracted[0], System.currentTimeMillis() - started);
+        }
+        return similarities;
+    }
 
-            if (denominator == 0) {
-                continue;
+    private long evictColdUsers(int userStripe, double decay, LongDoubleHashMap touchedPairs) {
+        LongObjectHashMap<LongArrayList> users = userEvents[userStripe];
+        LongArrayList emptyUsers = new LongArrayList();
+        long[] evicted = new long[1];
+        users.forEach((userId, eventIds) -> {
+            // Обход с конца: удаление текущего элемента не сдвигает ещё не просмотренные
+            for (int i = eventIds.size() - 1; i >= 0; i--) {
+                long eventId = eventIds.get(i);
+                double weight = userWeight(eventId, userId);
+                if (weight * decay >= evictionThreshold) {
+                    continue;
+                }
+                evictUserEvent(userId, eventId, eventIds, touchedPairs);
+                evicted[0]++;
+            }
+            if (eventIds.isEmpty()) {
+                emptyUsers.add(userId);
             }
+        });
+        for (int i = 0; i < emptyUsers.size(); i++) {
+            users.remove(emptyUsers.get(i));
+        }
+        return evicted[0];
+    }
 
-            double similarity = numerator / denominator;
+    /**
+     * Убирает мероприятие из списка пользователя и вычитает вес пользователя из суммы весов мероприятия
+     * и из сумм минимальных весов пар, которые мероприятие образует с остальными мероприятиями списка.
+     */
+    private void evictUserEvent(long userId, long eventId, LongArrayList eventIds, LongDoubleHashMap touchedPairs) {
+        double weight = userWeight(eventId, userId);
+        eventIds.removeValue(eventId);
+        // Пары с уже вытесненными мероприятиями пользователя были вычтены при их вытеснении
+        for (int j = 0; j < eventIds.size(); j++) {
+            long otherEventId = eventIds.get(j);
+            double min = Math.min(weight, userWeight(otherEventId, userId));
+            subtractMinWeight(eventId, otherEventId, min, touchedPairs);
+        }
+        removeUserWeight(eventId, userId, weight);
+    }
 
-            long firstEventId = Math.min(eventId, otherEventId);
-            long secondEventId = Math.max(eventId, otherEventId);
+    private double userWeight(long eventId, long userId) {
+        int stripe = stripe(eventId);
+        eventLocks[stripe].lock();
+        try {
+            EventWeights event = eventUserWeights[stripe].get(eventId);
+            return event == null ? 0.0 : event.userWeights.get(userId, 0.0);
+        } finally {
+            eventLocks[stripe].unlock();
+        }
+    }
 
+    private void removeUserWeight(long eventId, long userId, double weight) {
+        int stripe = stripe(eventId);
+        eventLocks[stripe].lock();
+        try {
+            EventWeights event = eventUserWeights[stripe].get(eventId);
+            if (event == null) {
+                return;
+            }
+            event.userWeights.remove(userId);
+            if (event.userWeights.isEmpty()) {
+                eventUserWeights[stripe].remove(eventId);
+            } else {
+                // Вычитание накапливает погрешность, отрицательной сумма быть не может
+                event.totalWeight = Math.max(event.totalWeight - weight, 0.0);
+            }
+        } finally {
+            eventLocks[stripe].unlock();
+        }
+    }
+
+    private void subtractMinWeight(long eventA, long eventB, double min, LongDoubleHashMap touchedPairs) {
+        long first = Math.min(eventA, eventB);
+        long second = Math.max(eventA, eventB);
+        int stripe = stripe(first);
+        long key = pairKey(first, second);
+        eventLocks[stripe].lock();
+        try {
+            LongDoubleHashMap sums = minWeightsSums[stripe];
+            double sum = sums.get(key, ABSENT);
+            if (sum == ABSENT) {
+                // Пара уже удалена как затухшая: вклад пользователя был ниже порога вместе со всей суммой
+                return;
+            }
+            sums.put(key, Math.max(sum - min, 0.0));
+        } finally {
+            eventLocks[stripe].unlock();
+        }
+        touchedPairs.put(key, 0.0);
+    }
+
+    /**
+     * Пересчитывает сходство пары после вытеснения.
+     *
+     * @return true, если пара удалена
+     */
+    private boolean refreshPair(long key, double decay, List<EventSimilarityAvro> similarities) {
+        long first = key >>> 32;
+        long second = key & MAX_EVENT_ID;
+        double denominator = Math.sqrt(totalWeightOrZero(first)) * Math.sqrt(totalWeightOrZero(second));
+        int stripe = stripe(first);
+        eventLocks[stripe].lock();
+        try {
+            LongDoubleHashMap sums = minWeightsSums[stripe];
+            double sum = sums.get(key, ABSENT);
+            if (sum == ABSENT) {
+                return false;
+            }
+            boolean retract = denominator == 0 || sum * decay < evictionThreshold;
+            if (retract) {
+                sums.remove(key);
+            }
             similarities.add(EventSimilarityAvro.newBuilder()
-                    .setEventA(firstEventId)
-                    .setEventB(secondEventId)
-                    .setScore(similarity)
+                    .setEventA(first)
+                    .setEventB(second)
+                    .setScore(retract ? 0.0 : sum / denominator)
                     .setTimestamp(Instant.now())
                     .build());
+            return retract;
+        } finally {
+            eventLocks[stripe].unlock();
         }
+    }
 
-        similarities.sort(Comparator
-                .comparing(EventSimilarityAvro::getEventA)
-                .thenComparing(EventSimilarityAvro::getEventB));
+    private double totalWeightOrZero(long eventId) {
+        int stripe = stripe(eventId);
+        eventLocks[stripe].lock();
+        try {
+            EventWeights event = eventUserWeights[stripe].get(eventId);
+            return event == null ? 0.0 : event.totalWeight;
+        } finally {
+            eventLocks[stripe].unlock();
+        }
+    }
 
-        return similarities;
+    /**
+     * Сбрасывает всё состояние, как после создания калькулятора.
+     */
+    public void reset() {
+        lockAll();
+        try {
+            for (int i = 0; i < STRIPES; i++) {
+                eventUserWeights[i] = new LongObjectHashMap<>();
+                minWeightsSums[i] = new LongDoubleHashMap();
+                userEvents[i] = new LongObjectHashMap<>();
+            }
+            landmark = NO_TIME;
+            watermark.set(NO_TIME);
+        } finally {
+            unlockAll();
+        }
     }
 
     /**
+     * Записывает всё состояние в снимок. На время записи берутся все блокировки,
+     * поэтому снимок согласован даже при параллельных вызовах {@link #updateWeights}.
+     */
+    public void writeSnapshot(DataOutput out) throws IOException {
+        lockAll();
+        try {
+            out.writeInt(STRIPES);
+            out.writeDouble(decayRate);
+            out.writeLong(landmark);
+            out.writeLong(watermark.get());
+            for (int i = 0; i < STRIPES; i++) {
+                writeEvents(out, eventUserWeights[i]);
+                writeSums(out, minWeightsSums[i]);
+                writeUserEvents(out, userEvents[i]);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Заменяет текущее состояние состоянием из снимка, записанного {@link #writeSnapshot}.
      *
-     * @param eventA
-     * @param eventB
-     * @param delta
-     * Этот метод обновляет сумму минимальных весов (S_min) для пары мероприятий
-        */
-    private void updateMinWeightsSum(long eventA, long eventB, double delta) {
-        long first = Math.min(eventA, eventB);
-        long second = Math.max(eventA, eventB);
+     * @param withDecay в снимке есть параметры затухания; в снимках без них веса не затухали
+     */
+    public void restoreSnapshot(DataInput in, boolean withDecay) throws IOException {
+        int stripes = in.readInt();
+        if (stripes != STRIPES) {
+            throw new IOException("Снимок записан для " + stripes + " полос, ожидается " + STRIPES);
+        }
+        double savedDecayRate = withDecay ? in.readDouble() : 0.0;
+        long savedLandmark = withDecay ? in.readLong() : NO_TIME;
+        long savedWatermark = withDecay ? in.readLong() : NO_TIME;
+        // Снимок читается целиком до замены, чтобы повреждённый файл не оставил состояние частично загруженным
+        List<LongObjectHashMap<EventWeights>> events = new ArrayList<>(STRIPES);
+        List<LongDoubleHashMap> sums = new ArrayList<>(STRIPES);
+        List<LongObjectHashMap<LongArrayList>> users = new ArrayList<>(STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            events.add(readEvents(in));
+            sums.add(readSums(in));
+            users.add(readUserEvents(in));
+        }
+        lockAll();
+        try {
+            for (int i = 0; i < STRIPES; i++) {
+                eventUserWeights[i] = events.get(i);
+                minWeightsSums[i] = sums.get(i);
+                userEvents[i] = users.get(i);
+            }
+            restoreDecay(savedDecayRate, savedLandmark, savedWatermark);
+        } finally {
+            unlockAll();
+        }
+    }
 
-        minWeightsSums.compute(first, (k, innerMap) -> {
-           if (innerMap == null) innerMap = new ConcurrentHashMap<>();
-           innerMap.merge(second, delta, Double::sum);
-            return innerMap;
+    /**
+     * Восстанавливает опорную точку из снимка. Если скорость затухания с тех пор изменилась,
+     * веса приводятся к моменту последнего действия по прежней скорости, и отсчёт по новой начинается с него.
+     * Веса из снимка без затухания считаются приведёнными к первому действию после старта.
+     */
+    private void restoreDecay(double savedDecayRate, long savedLandmark, long savedWatermark) {
+        watermark.set(savedWatermark);
+        if (savedLandmark == NO_TIME || savedDecayRate == decayRate) {
+            landmark = savedLandmark;
+            return;
+        }
+        if (savedDecayRate != 0) {
+            scaleAll(Math.exp(-savedDecayRate * (savedWatermark - savedLandmark)));
+        }
+        landmark = decayRate != 0 ? savedWatermark : NO_TIME;
+        log.info("Скорость затухания изменилась, веса из снимка приведены к {}", Instant.ofEpochMilli(savedWatermark));
+    }
+
+    private static void writeEvents(DataOutput out, LongObjectHashMap<EventWeights> events) throws IOException {
+        out.writeInt(events.size());
+        events.forEach((eventId, event) -> {
+            writeLong(out, eventId);
+            writeDouble(out, event.totalWeight);
+            writeSums(out, event.userWeights);
         });
     }
 
-    private double getMinWeightsSum(long eventA, long eventB) {
-        long first = Math.min(eventA, eventB);
-        long second = Math.max(eventA, eventB);
+    private static LongObjectHashMap<EventWeights> readEvents(DataInput in) throws IOException {
+        int size = in.readInt();
+        LongObjectHashMap<EventWeights> events = new LongObjectHashMap<>(size);
+        for (int i = 0; i < size; i++) {
+            long eventId = in.readLong();
+            EventWeights event = new EventWeights(in.readDouble(), readSums(in));
+            events.put(eventId, event);
+        }
+        return events;
+    }
+
+    private static void writeSums(DataOutput out, LongDoubleHashMap sums) {
+        writeInt(out, sums.size());
+        sums.forEach((key, value) -> {
+            writeLong(out, key);
+            writeDouble(out, value);
+        });
+    }
+
+    private static LongDoubleHashMap readSums(DataInput in) throws IOException {
+        int size = in.readInt();
+        LongDoubleHashMap sums = new LongDoubleHashMap(size);
+        for (int i = 0; i < size; i++) {
+            sums.put(in.readLong(), in.readDouble());
+        }
+        return sums;
+    }
 
-        return minWeightsSums.getOrDefault(first, Collections.emptyMap())
-                .getOrDefault(second, 0.0);
+    private static void writeUserEvents(DataOutput out, LongObjectHashMap<LongArrayList> users) throws IOException {
+        out.writeInt(users.size());
+        users.forEach((userId, eventIds) -> {
+            writeLong(out, userId);
+            writeInt(out, eventIds.size());
+            for (int i = 0; i < eventIds.size(); i++) {
+                writeLong(out, eventIds.get(i));
+            }
+        });
+    }
+
+    private static LongObjectHashMap<LongArrayList> readUserEvents(DataInput in) throws IOException {
+        int size = in.readInt();
+        LongObjectHashMap<LongArrayList> users = new LongObjectHashMap<>(size);
+        for (int i = 0; i < size; i++) {
+            long userId = in.readLong();
+            int count = in.readInt();
+            LongArrayList eventIds = new LongArrayList(count);
+            for (int j = 0; j < count; j++) {
+                eventIds.add(in.readLong());
+            }
+            users.put(userId, eventIds);
+        }
+        return users;
+    }
+
+    // Обёртки для записи из лямбд forEach, которые не могут бросать IOException
+    private static void writeInt(DataOutput out, int value) {
+        try {
+            out.writeInt(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeLong(DataOutput out, long value) {
+        try {
+            out.writeLong(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeDouble(DataOutput out, double value) {
+        try {
+            out.writeDouble(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Порядок совпадает с updateWeights: сначала полосы пользователей, затем мероприятий
+    private void lockAll() {
+        for (ReentrantLock lock : userLocks) {
+            lock.lock();
+        }
+        for (ReentrantLock lock : eventLocks) {
+            lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (ReentrantLock lock : eventLocks) {
+            lock.unlock();
+        }
+        for (ReentrantLock lock : userLocks) {
+            lock.unlock();
+        }
+    }
+
+    static long pairKey(long first, long second) {
+        return first << 32 | second;
+    }
+
+    private static int stripe(long id) {
+        return Hashing.mix(id) & (STRIPES - 1);
+    }
+
+    private static void checkEventId(long eventId) {
+        if (eventId < 0 || eventId > MAX_EVENT_ID) {
+            throw new IllegalArgumentException("ID мероприятия вне допустимого диапазона: " + eventId);
+        }
+    }
+
+    static final class EventWeights {
+        final LongDoubleHashMap userWeights;
+        double totalWeight;
+
+        EventWeights() {
+            this(0.0, new LongDoubleHashMap());
+        }
+
+        EventWeights(double totalWeight, LongDoubleHashMap userWeights) {
+            this.totalWeight = totalWeight;
+            this.userWeights = userWeights;
+        }
     }
 }
@@ -0,0 +1,18 @@
+package ru.practicum.aggregator;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "aggregator.fanout")
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Getter
+@Setter
+public class FanoutProperties {
+    // Сколько последних мероприятий пользователя участвуют в парах; 0 — вся история, как раньше
+    int maxUserEvents = 0;
+}
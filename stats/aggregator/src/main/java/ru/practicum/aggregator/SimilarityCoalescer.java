@@ -0,0 +1,98 @@
+package ru.practicum.aggregator;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.aggregator.state.LongObjectHashMap;
+import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Буфер между расчётом сходства и отправкой в Kafka.
+ * <p>
+ * За окно (по времени или по количеству пар) для каждой пары мероприятий хранится только последнее значение,
+ * поэтому активный пользователь, породивший серию обновлений одних и тех же пар, даёт одну запись на пару.
+ * Из двух значений пары остаётся более позднее по метке времени: воркеры разных партиций могут добавить их
+ * не в том порядке, в котором они были рассчитаны.
+ */
+@Component
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class SimilarityCoalescer {
+    @Value("${aggregator.coalescing.window-ms:1000}")
+    long windowMs;
+
+    @Value("${aggregator.coalescing.max-pairs:10000}")
+    int maxPairs;
+
+    final ReentrantLock lock = new ReentrantLock();
+    LongObjectHashMap<EventSimilarityAvro> pending = new LongObjectHashMap<>();
+    long windowStartedAt = System.currentTimeMillis();
+    long receivedInWindow;
+
+    public void add(List<EventSimilarityAvro> similarities) {
+        if (similarities.isEmpty()) {
+            return;
+        }
+        lock.lock();
+        try {
+            for (EventSimilarityAvro similarity : similarities) {
+                long key = EventSimilarityCalculator.pairKey(similarity.getEventA(), similarity.getEventB());
+                EventSimilarityAvro current = pending.get(key);
+                if (current == null || !similarity.getTimestamp().isBefore(current.getTimestamp())) {
+                    pending.put(key, similarity);
+                }
+            }
+            receivedInWindow += similarities.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isFlushDue() {
+        lock.lock();
+        try {
+            return pending.size() >= maxPairs || System.currentTimeMillis() - windowStartedAt >= windowMs;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Забирает накопленные за окно значения и открывает новое окно.
+     */
+    public List<EventSimilarityAvro> drain() {
+        LongObjectHashMap<EventSimilarityAvro> drained;
+        long received;
+        lock.lock();
+        try {
+            drained = pending;
+            received = receivedInWindow;
+            pending = new LongObjectHashMap<>();
+            receivedInWindow = 0;
+            windowStartedAt = System.currentTimeMillis();
+        } finally {
+            lock.unlock();
+        }
+        if (drained.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<EventSimilarityAvro> result = new ArrayList<>(drained.size());
+        drained.forEach((key, similarity) -> result.add(similarity));
+        log.debug("За окно получено {} обновлений сходства, к отправке {}", received, result.size());
+        return result;
+    }
+
+    /**
+     * Ключ записи в топике: пара мероприятий, чтобы при log compaction в топике оставалось последнее значение пары.
+     */
+    public static String recordKey(EventSimilarityAvro similarity) {
+        return similarity.getEventA() + "-" + similarity.getEventB();
+    }
+}
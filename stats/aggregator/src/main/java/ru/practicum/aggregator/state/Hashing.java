@@ -0,0 +1,14 @@
+package ru.practicum.aggregator.state;
+
+public final class Hashing {
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+
+    private Hashing() {
+    }
+
+    // Перемешивание битов ключа, чтобы последовательные id не образовывали кластеры в таблице
+    public static int mix(long key) {
+        long h = key * GOLDEN_RATIO;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,74 @@
+package ru.practicum.aggregator.state;
+
+import java.util.Arrays;
+
+/**
+ * Расширяемый список примитивных long без упаковки элементов.
+ * Класс не потокобезопасен: синхронизацию обеспечивает владелец.
+ */
+public final class LongArrayList {
+    private static final int DEFAULT_CAPACITY = 4;
+
+    private long[] elements;
+    private int size;
+
+    public LongArrayList() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongArrayList(int initialCapacity) {
+        elements = new long[Math.max(initialCapacity, 1)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Индекс " + index + " вне диапазона, размер " + size);
+        }
+        return elements[index];
+    }
+
+    public void add(long value) {
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, elements.length << 1);
+        }
+        elements[size++] = value;
+    }
+
+    public boolean contains(long value) {
+        return indexOf(value) >= 0;
+    }
+
+    public int indexOf(long value) {
+        for (int i = 0; i < size; i++) {
+            if (elements[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Удаляет первое вхождение значения с сохранением порядка остальных элементов.
+     */
+    public boolean removeValue(long value) {
+        int index = indexOf(value);
+        if (index < 0) {
+            return false;
+        }
+        System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+        size--;
+        return true;
+    }
+
+    public long[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+}
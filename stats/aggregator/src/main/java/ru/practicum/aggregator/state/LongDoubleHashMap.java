@@ -0,0 +1,235 @@
+package ru.practicum.aggregator.state;
+
+import java.util.Arrays;
+
+/**
+ * Хеш-таблица long → double с открытой адресацией и линейным пробированием.
+ * Ключи и значения хранятся в примитивных массивах, поэтому на каждую запись
+ * не создаются объекты Long/Double и Map.Entry.
+ * Ключ 0 используется как признак пустой ячейки и хранится отдельно.
+ * Класс не потокобезопасен: синхронизацию обеспечивает владелец.
+ */
+public final class LongDoubleHashMap {
+    private static final float LOAD_FACTOR = 0.6f;
+    private static final int MIN_CAPACITY = 4;
+
+    private long[] keys;
+    private double[] values;
+    private int mask;
+    private int resizeThreshold;
+    private int size;
+    private boolean hasZeroKey;
+    private double zeroValue;
+
+    public LongDoubleHashMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public LongDoubleHashMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(long key) {
+        if (key == 0) {
+            return hasZeroKey;
+        }
+        return findSlot(key) >= 0;
+    }
+
+    public double get(long key, double defaultValue) {
+        if (key == 0) {
+            return hasZeroKey ? zeroValue : defaultValue;
+        }
+        int slot = findSlot(key);
+        return slot >= 0 ? values[slot] : defaultValue;
+    }
+
+    public void put(long key, double value) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return;
+        }
+        int slot = slotOf(key);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        insertAt(slot, key, value);
+    }
+
+    /**
+     * Прибавляет delta к значению по ключу (отсутствующее значение считается равным 0).
+     *
+     * @return новое значение
+     */
+    public double addTo(long key, double delta) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+                zeroValue = 0;
+            }
+            zeroValue += delta;
+            return zeroValue;
+        }
+        int slot = slotOf(key);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                values[slot] += delta;
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        insertAt(slot, key, delta);
+        return delta;
+    }
+
+    public boolean remove(long key) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                return false;
+            }
+            hasZeroKey = false;
+            zeroValue = 0;
+            size--;
+            return true;
+        }
+        int slot = findSlot(key);
+        if (slot < 0) {
+            return false;
+        }
+        shiftKeys(slot);
+        size--;
+        return true;
+    }
+
+    /**
+     * Умножает все значения на factor.
+     */
+    public void scale(double factor) {
+        zeroValue *= factor;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                values[i] *= factor;
+            }
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, 0);
+        hasZeroKey = false;
+        zeroValue = 0;
+        size = 0;
+    }
+
+    public void forEach(LongDoubleConsumer consumer) {
+        if (hasZeroKey) {
+            consumer.accept(0, zeroValue);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    private int findSlot(long key) {
+        int slot = slotOf(key);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void insertAt(int slot, long key, double value) {
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > resizeThreshold) {
+            rehash(keys.length << 1);
+        }
+    }
+
+    /**
+     * Удаление без "надгробий": сдвигает назад элементы цепочки пробирования,
+     * чтобы поиск по ним не обрывался на освобождённой ячейке.
+     */
+    private void shiftKeys(int pos) {
+        while (true) {
+            int last = pos;
+            pos = (pos + 1) & mask;
+            long key;
+            while (true) {
+                key = keys[pos];
+                if (key == 0) {
+                    keys[last] = 0;
+                    values[last] = 0;
+                    return;
+                }
+                int slot = slotOf(key);
+                if (last <= pos ? last >= slot || slot > pos : last >= slot && slot > pos) {
+                    break;
+                }
+                pos = (pos + 1) & mask;
+            }
+            keys[last] = key;
+            values[last] = values[pos];
+        }
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        double[] oldValues = values;
+        allocate(newCapacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != 0) {
+                int slot = slotOf(key);
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new double[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private int slotOf(long key) {
+        return Hashing.mix(key) & mask;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int required = (int) Math.ceil(Math.max(expectedSize, MIN_CAPACITY) / LOAD_FACTOR);
+        return Integer.highestOneBit(required - 1) << 1;
+    }
+
+    @FunctionalInterface
+    public interface LongDoubleConsumer {
+        void accept(long key, double value);
+    }
+}
@@ -0,0 +1,167 @@
+package ru.practicum.aggregator.state;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.stereotype.Component;
+import ru.practicum.aggregator.EventSimilarityCalculator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Локальное хранилище снимков состояния {@link EventSimilarityCalculator}.
+ * <p>
+ * Снимок содержит всё состояние калькулятора и позиции consumer'а по партициям входного топика,
+ * на которых это состояние было получено. Файл пишется во временный и атомарно переименовывается,
+ * в конце хранится CRC32, поэтому оборванная запись или повреждённый файл не будут загружены.
+ */
+@Component
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@RequiredArgsConstructor
+public class SimilarityStateStore {
+    static final String SNAPSHOT_FILE = "similarity-state.snapshot";
+    static final int MAGIC = 0x45534353;
+    // Версия 2: добавлены параметры затухания весов; снимки версии 1 читаются как снимки без затухания
+    static final int VERSION = 2;
+    static final int MIN_VERSION = 1;
+
+    final EventSimilarityCalculator calculator;
+    final StateStoreProperties properties;
+    long lastSnapshotAt = System.currentTimeMillis();
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public boolean isSnapshotDue() {
+        return properties.isEnabled()
+                && System.currentTimeMillis() - lastSnapshotAt >= properties.getSnapshotIntervalMs();
+    }
+
+    /**
+     * Загружает последний снимок в калькулятор.
+     *
+     * @return позиции по партициям, с которых нужно дочитать топик, или пустая карта, если снимка нет
+     */
+    public Map<TopicPartition, Long> restore() {
+        if (!properties.isEnabled()) {
+            return Collections.emptyMap();
+        }
+        Path file = Path.of(properties.getDirectory(), SNAPSHOT_FILE);
+        if (!Files.exists(file)) {
+            log.info("Снимок состояния {} не найден, состояние будет восстановлено из топика", file);
+            return Collections.emptyMap();
+        }
+        long started = System.currentTimeMillis();
+        try {
+            // Контрольная сумма проверяется до загрузки, чтобы не подменить состояние повреждённым снимком
+            verifyChecksum(file);
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                int magic = in.readInt();
+                int version = in.readInt();
+                if (magic != MAGIC || version < MIN_VERSION || version > VERSION) {
+                    throw new IOException("Неизвестный формат снимка");
+                }
+                Map<TopicPartition, Long> offsets = readOffsets(in);
+                calculator.restoreSnapshot(in, version >= 2);
+                log.info("Состояние восстановлено из снимка {} за {} мс, позиции {}",
+                        file, System.currentTimeMillis() - started, offsets);
+                return offsets;
+            }
+        } catch (IOException e) {
+            log.error("Не удалось загрузить снимок {}, состояние будет восстановлено из топика", file, e);
+            return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * Записывает снимок состояния вместе с позициями, до которых обработан входной топик.
+     */
+    public void snapshot(Map<TopicPartition, Long> offsets) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        long started = System.currentTimeMillis();
+        Path directory = Path.of(properties.getDirectory());
+        Path file = directory.resolve(SNAPSHOT_FILE);
+        Path tmp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        CRC32 crc = new CRC32();
+        try {
+            Files.createDirectories(directory);
+            try (OutputStream fileOut = new BufferedOutputStream(Files.newOutputStream(tmp));
+                 DataOutputStream out = new DataOutputStream(new CheckedOutputStream(fileOut, crc))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                writeOffsets(out, offsets);
+                calculator.writeSnapshot(out);
+                out.writeLong(crc.getValue());
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            lastSnapshotAt = System.currentTimeMillis();
+            log.info("Снимок состояния записан в {} за {} мс, позиции {}",
+                    file, lastSnapshotAt - started, offsets);
+        } catch (IOException e) {
+            log.error("Ошибка записи снимка состояния в {}", file, e);
+        }
+    }
+
+    private static void verifyChecksum(Path file) throws IOException {
+        long contentSize = Files.size(file) - Long.BYTES;
+        if (contentSize < 0) {
+            throw new IOException("Снимок обрезан");
+        }
+        CRC32 crc = new CRC32();
+        try (InputStream fileIn = new BufferedInputStream(Files.newInputStream(file));
+             DataInputStream in = new DataInputStream(fileIn)) {
+            InputStream checked = new CheckedInputStream(in, crc);
+            byte[] buffer = new byte[64 * 1024];
+            long remaining = contentSize;
+            while (remaining > 0) {
+                int read = checked.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    throw new IOException("Снимок обрезан");
+                }
+                remaining -= read;
+            }
+            if (in.readLong() != crc.getValue()) {
+                throw new IOException("Контрольная сумма снимка не совпадает");
+            }
+        }
+    }
+
+    private static void writeOffsets(DataOutputStream out, Map<TopicPartition, Long> offsets) throws IOException {
+        out.writeInt(offsets.size());
+        for (Map.Entry<TopicPartition, Long> entry : offsets.entrySet()) {
+            out.writeUTF(entry.getKey().topic());
+            out.writeInt(entry.getKey().partition());
+            out.writeLong(entry.getValue());
+        }
+    }
+
+    private static Map<TopicPartition, Long> readOffsets(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        Map<TopicPartition, Long> offsets = new HashMap<>(size);
+        for (int i = 0; i < size; i++) {
+            offsets.put(new TopicPartition(in.readUTF(), in.readInt()), in.readLong());
+        }
+        return offsets;
+    }
+}
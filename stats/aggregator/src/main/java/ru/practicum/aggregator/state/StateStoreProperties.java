@@ -0,0 +1,22 @@
+package ru.practicum.aggregator.state;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "aggregator.state-store")
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Getter
+@Setter
+public class StateStoreProperties {
+    // Без хранилища состояние живёт только в памяти, как раньше
+    boolean enabled = false;
+    // Каталог для файла снимка
+    String directory = "./aggregator-state";
+    // Как часто записывать снимок в цикле обработки
+    long snapshotIntervalMs = 60_000;
+}
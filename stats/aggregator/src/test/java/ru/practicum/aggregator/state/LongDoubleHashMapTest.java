@@ -0,0 +1,112 @@
+package ru.practicum.aggregator.state;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LongDoubleHashMapTest {
+
+    @Test
+    void randomOperationsMatchHashMap() {
+        Random random = new Random(42);
+        // Узкий диапазон ключей с нулём: длинные цепочки пробирования, частые удаления из их середины
+        for (int round = 0; round < 20; round++) {
+            LongDoubleHashMap map = new LongDoubleHashMap();
+            Map<Long, Double> expected = new HashMap<>();
+            long range = 8 + random.nextInt(500);
+            for (int i = 0; i < 20_000; i++) {
+                long key = random.nextLong(range) - range / 4;
+                switch (random.nextInt(4)) {
+                    case 0 -> {
+                        double value = random.nextDouble();
+                        map.put(key, value);
+                        expected.put(key, value);
+                    }
+                    case 1 -> {
+                        double delta = random.nextDouble();
+                        assertEquals(expected.merge(key, delta, Double::sum), map.addTo(key, delta));
+                    }
+                    default -> assertEquals(expected.remove(key) != null, map.remove(key));
+                }
+                assertEquals(expected.size(), map.size());
+            }
+            assertSameContent(expected, map, range);
+        }
+    }
+
+    @Test
+    void removalKeepsCollidingKeysReachable() {
+        LongDoubleHashMap map = new LongDoubleHashMap();
+        Map<Long, Double> expected = new HashMap<>();
+        for (long key = 1; key <= 1_000; key++) {
+            map.put(key, key);
+            expected.put(key, (double) key);
+        }
+        // Удаление каждого третьего ключа сдвигает хвосты цепочек, в том числе через конец массива
+        for (long key = 1; key <= 1_000; key += 3) {
+            assertTrue(map.remove(key));
+            expected.remove(key);
+        }
+        assertFalse(map.remove(1));
+        assertSameContent(expected, map, 1_001);
+    }
+
+    @Test
+    void zeroKeyIsStoredSeparately() {
+        LongDoubleHashMap map = new LongDoubleHashMap();
+        assertFalse(map.containsKey(0));
+        assertEquals(-1.0, map.get(0, -1.0));
+
+        map.put(0, 2.5);
+        map.put(7, 1.0);
+        assertTrue(map.containsKey(0));
+        assertEquals(2.5, map.get(0, -1.0));
+        assertEquals(3.5, map.addTo(0, 1.0));
+        assertEquals(2, map.size());
+
+        map.scale(2.0);
+        assertEquals(7.0, map.get(0, -1.0));
+        assertEquals(2.0, map.get(7, -1.0));
+
+        assertTrue(map.remove(0));
+        assertFalse(map.remove(0));
+        assertEquals(1, map.size());
+        assertEquals(1.0, map.addTo(0, 1.0));
+    }
+
+    @Test
+    void growsFromMinimalCapacity() {
+        LongDoubleHashMap map = new LongDoubleHashMap(0);
+        Map<Long, Double> expected = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            long key = random.nextLong();
+            map.put(key, i);
+            expected.put(key, (double) i);
+        }
+        assertEquals(expected.size(), map.size());
+        expected.forEach((key, value) -> assertEquals(value, map.get(key, Double.NaN)));
+
+        map.clear();
+        assertEquals(0, map.size());
+        assertTrue(map.isEmpty());
+        expected.keySet().stream().limit(1_000).forEach(key -> assertFalse(map.containsKey(key)));
+    }
+
+    private static void assertSameContent(Map<Long, Double> expected, LongDoubleHashMap map, long range) {
+        assertEquals(expected.size(), map.size());
+        for (long key = -range; key <= range; key++) {
+            assertEquals(expected.containsKey(key), map.containsKey(key), "ключ " + key);
+            assertEquals(expected.getOrDefault(key, Double.NaN), map.get(key, Double.NaN), "ключ " + key);
+        }
+        Map<Long, Double> iterated = new HashMap<>();
+        map.forEach((key, value) -> assertEquals(null, iterated.put(key, value), "повтор ключа " + key));
+        assertEquals(expected, iterated);
+    }
+}
@@ -0,0 +1,106 @@
+package ru.practicum.aggregator.state;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LongObjectHashMapTest {
+
+    @Test
+    void randomOperationsMatchHashMap() {
+        Random random = new Random(42);
+        // Узкий диапазон ключей с нулём: длинные цепочки пробирования, частые удаления из их середины
+        for (int round = 0; round < 20; round++) {
+            LongObjectHashMap<String> map = new LongObjectHashMap<>();
+            Map<Long, String> expected = new HashMap<>();
+            long range = 8 + random.nextInt(500);
+            for (int i = 0; i < 20_000; i++) {
+                long key = random.nextLong(range) - range / 4;
+                switch (random.nextInt(4)) {
+                    case 0 -> {
+                        String value = "v" + i;
+                        map.put(key, value);
+                        expected.put(key, value);
+                    }
+                    case 1 -> assertEquals(expected.computeIfAbsent(key, k -> "c" + k),
+                            map.computeIfAbsent(key, k -> "c" + k));
+                    default -> assertEquals(expected.remove(key) != null, map.remove(key));
+                }
+                assertEquals(expected.size(), map.size());
+            }
+            assertSameContent(expected, map, range);
+        }
+    }
+
+    @Test
+    void removalKeepsCollidingKeysReachable() {
+        LongObjectHashMap<Long> map = new LongObjectHashMap<>();
+        Map<Long, Long> expected = new HashMap<>();
+        for (long key = 1; key <= 1_000; key++) {
+            map.put(key, key);
+            expected.put(key, key);
+        }
+        // Удаление каждого третьего ключа сдвигает хвосты цепочек, в том числе через конец массива
+        for (long key = 1; key <= 1_000; key += 3) {
+            assertTrue(map.remove(key));
+            expected.remove(key);
+        }
+        assertFalse(map.remove(1));
+        assertSameContent(expected, map, 1_001);
+    }
+
+    @Test
+    void zeroKeyIsStoredSeparately() {
+        LongObjectHashMap<String> map = new LongObjectHashMap<>();
+        assertNull(map.get(0));
+
+        map.put(0, "zero");
+        map.put(7, "seven");
+        assertEquals("zero", map.get(0));
+        assertSame(map.get(0), map.computeIfAbsent(0, key -> "other"));
+        assertEquals(2, map.size());
+
+        assertTrue(map.remove(0));
+        assertFalse(map.remove(0));
+        assertNull(map.get(0));
+        assertEquals(1, map.size());
+        assertEquals("created", map.computeIfAbsent(0, key -> "created"));
+    }
+
+    @Test
+    void growsFromMinimalCapacity() {
+        LongObjectHashMap<Integer> map = new LongObjectHashMap<>(0);
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            long key = random.nextLong();
+            map.put(key, i);
+            expected.put(key, i);
+        }
+        assertEquals(expected.size(), map.size());
+        expected.forEach((key, value) -> assertEquals(value, map.get(key)));
+
+        map.clear();
+        assertEquals(0, map.size());
+        assertTrue(map.isEmpty());
+        expected.keySet().stream().limit(1_000).forEach(key -> assertNull(map.get(key)));
+    }
+
+    private static <V> void assertSameContent(Map<Long, V> expected, LongObjectHashMap<V> map, long range) {
+        assertEquals(expected.size(), map.size());
+        for (long key = -range; key <= range; key++) {
+            assertEquals(expected.get(key), map.get(key), "ключ " + key);
+        }
+        Map<Long, V> iterated = new HashMap<>();
+        map.forEach((key, value) -> assertNull(iterated.put(key, value), "повтор ключа " + key));
+        assertEquals(expected, iterated);
+    }
+}
@@ -17,6 +17,9 @@ import java.util.Properties;
 public class AnalyzerConfig {
     @Value("${kafka.consumer.bootstrap_server}")
     private String bootstrapServer;
+
+    @Value("${analyzer.user-actions.batch-size:500}")
+    private int userActionBatchSize;
     
     @Bean
     public KafkaConsumer<String, EventSimilarityAvro> eventSimilarityConsumer() {
@@ -25,6 +28,8 @@ public class AnalyzerConfig {
         properties.put(ConsumerConfig.GROUP_ID_CONFIG, "analyzer_consumer");
         properties.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServer);
         properties.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        // Агрегатор пишет сходства транзакциями: незавершённые и отменённые записи не читаем
+        properties.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
         properties.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
         properties.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, EventSimilarityDeserializer.class);
         return new KafkaConsumer<>(properties);
@@ -39,6 +44,8 @@ public class AnalyzerConfig {
         properties.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
         properties.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
         properties.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, UserActionDeserializer.class);
+        // Один poll не больше пачки записи в БД
+        properties.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, userActionBatchSize);
         return new KafkaConsumer<>(properties);
     }
 }
@@ -0,0 +1,91 @@
+package ru.practicum.index;
+
+import java.util.Arrays;
+
+/**
+ * Неизменяемый список ближайших соседей мероприятия, упорядоченный по убыванию сходства.
+ * Обновление создаёт новый экземпляр, поэтому читатели обходят список без блокировок.
+ */
+public final class Neighbours {
+    static final Neighbours EMPTY = new Neighbours(new long[0], new double[0]);
+
+    final long[] eventIds;
+    final double[] scores;
+
+    private Neighbours(long[] eventIds, double[] scores) {
+        this.eventIds = eventIds;
+        this.scores = scores;
+    }
+
+    public int size() {
+        return eventIds.length;
+    }
+
+    public long eventId(int index) {
+        return eventIds[index];
+    }
+
+    public double score(int index) {
+        return scores[index];
+    }
+
+    /**
+     * Возвращает список, в котором у соседа eventId новое значение сходства.
+     * Если соседей больше capacity, отбрасывается сосед с наименьшим сходством.
+     */
+    Neighbours with(long eventId, double score, int capacity) {
+        int size = eventIds.length;
+        long[] newIds = new long[Math.min(size + 1, capacity)];
+        double[] newScores = new double[newIds.length];
+        int count = 0;
+        boolean inserted = false;
+        for (int i = 0; i < size && count < newIds.length; i++) {
+            if (eventIds[i] == eventId) {
+                continue;
+            }
+            if (!inserted && score > scores[i]) {
+                newIds[count] = eventId;
+                newScores[count++] = score;
+                inserted = true;
+                if (count == newIds.length) {
+                    break;
+                }
+            }
+            newIds[count] = eventIds[i];
+            newScores[count++] = scores[i];
+        }
+        if (!inserted && count < newIds.length) {
+            newIds[count] = eventId;
+            newScores[count++] = score;
+        }
+        if (count < newIds.length) {
+            // Сосед уже был в списке: длина не изменилась
+            newIds = Arrays.copyOf(newIds, count);
+            newScores = Arrays.copyOf(newScores, count);
+        }
+        return new Neighbours(newIds, newScores);
+    }
+
+    /**
+     * Возвращает список без соседа eventId или этот же список, если такого соседа в нём нет.
+     */
+    Neighbours without(long eventId) {
+        int index = -1;
+        for (int i = 0; i < eventIds.length; i++) {
+            if (eventIds[i] == eventId) {
+                index = i;
+                break;
+            }
+        }
+        if (index < 0) {
+            return this;
+        }
+        long[] newIds = new long[eventIds.length - 1];
+        double[] newScores = new double[newIds.length];
+        System.arraycopy(eventIds, 0, newIds, 0, index);
+        System.arraycopy(scores, 0, newScores, 0, index);
+        System.arraycopy(eventIds, index + 1, newIds, index, newIds.length - index);
+        System.arraycopy(scores, index + 1, newScores, index, newScores.length - index);
+        return new Neighbours(newIds, newScores);
+    }
+}
@@ -0,0 +1,90 @@
+package ru.practicum.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.model.EventSimilarity;
+import ru.practicum.repository.EventSimilarityRepository;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Индекс ближайших соседей по сходству для каждого мероприятия.
+ * При старте строится из таблицы event_similarities, затем поддерживается потоком сходств из Kafka.
+ * <p>
+ * Для каждого мероприятия хранится не больше capacity соседей с наибольшим сходством.
+ * Если сходство соседа из списка уменьшилось, его место может принадлежать соседу, уже вытесненному из списка;
+ * такой сосед вернётся в индекс при следующем обновлении его пары или при перезапуске.
+ * Запас capacity над числом запрашиваемых рекомендаций сглаживает это приближение.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class SimilarityIndex {
+    final EventSimilarityRepository eventSimilarityRepository;
+    final Map<Long, Neighbours> neighbours = new ConcurrentHashMap<>();
+
+    @Value("${analyzer.similarity-index.capacity:100}")
+    int capacity;
+
+    @PostConstruct
+    public void load() {
+        long start = System.currentTimeMillis();
+        long[] pairs = new long[1];
+        eventSimilarityRepository.scanAll((eventIdA, eventIdB, score) -> {
+            update(eventIdA, eventIdB, score);
+            pairs[0]++;
+        });
+        log.info("Индекс сходства построен: {} пар, {} мероприятий за {} мс",
+                pairs[0], neighbours.size(), System.currentTimeMillis() - start);
+    }
+
+    public void updateAll(Collection<EventSimilarity> similarities) {
+        for (EventSimilarity similarity : similarities) {
+            update(similarity.getEventIdA(), similarity.getEventIdB(), similarity.getScore());
+        }
+    }
+
+    /**
+     * Сходство симметрично: пара хранится в БД один раз, а в индексе попадает в списки обоих мероприятий.
+     */
+    public void update(long eventIdA, long eventIdB, double score) {
+        addNeighbour(eventIdA, eventIdB, score);
+        addNeighbour(eventIdB, eventIdA, score);
+    }
+
+    public void removeAll(Collection<EventSimilarity> similarities) {
+        for (EventSimilarity similarity : similarities) {
+            remove(similarity.getEventIdA(), similarity.getEventIdB());
+        }
+    }
+
+    public void remove(long eventIdA, long eventIdB) {
+        removeNeighbour(eventIdA, eventIdB);
+        removeNeighbour(eventIdB, eventIdA);
+    }
+
+    public Neighbours neighboursOf(long eventId) {
+        return neighbours.getOrDefault(eventId, Neighbours.EMPTY);
+    }
+
+    private void addNeighbour(long eventId, long neighbourId, double score) {
+        neighbours.compute(eventId, (id, current) ->
+                (current == null ? Neighbours.EMPTY : current).with(neighbourId, score, capacity));
+    }
+
+    // Мероприятие без соседей удаляется из индекса целиком
+    private void removeNeighbour(long eventId, long neighbourId) {
+        neighbours.computeIfPresent(eventId, (id, current) -> {
+            Neighbours rest = current.without(neighbourId);
+            return rest.size() == 0 ? null : rest;
+        });
+    }
+}
@@ -0,0 +1,61 @@
+package ru.practicum.index;
+
+import java.util.Arrays;
+
+/**
+ * Неизменяемый набор мероприятий пользователя с максимальным весом его действий по каждому.
+ * Id мероприятий отсортированы, поиск веса — двоичный поиск по примитивному массиву.
+ */
+public final class UserEvents {
+    static final UserEvents EMPTY = new UserEvents(new long[0], new double[0]);
+    public static final double NO_WEIGHT = -1.0;
+
+    final long[] eventIds;
+    final double[] weights;
+
+    private UserEvents(long[] eventIds, double[] weights) {
+        this.eventIds = eventIds;
+        this.weights = weights;
+    }
+
+    public int size() {
+        return eventIds.length;
+    }
+
+    public boolean contains(long eventId) {
+        return Arrays.binarySearch(eventIds, eventId) >= 0;
+    }
+
+    /**
+     * @return максимальный вес действий пользователя с мероприятием или {@link #NO_WEIGHT}, если их не было
+     */
+    public double weight(long eventId) {
+        int position = Arrays.binarySearch(eventIds, eventId);
+        return position >= 0 ? weights[position] : NO_WEIGHT;
+    }
+
+    /**
+     * Возвращает набор, в котором вес мероприятия не меньше weight. Если вес не изменился, возвращает этот же набор.
+     */
+    UserEvents with(long eventId, double weight) {
+        int position = Arrays.binarySearch(eventIds, eventId);
+        if (position >= 0) {
+            if (weights[position] >= weight) {
+                return this;
+            }
+            double[] newWeights = weights.clone();
+            newWeights[position] = weight;
+            return new UserEvents(eventIds, newWeights);
+        }
+        int insertAt = -position - 1;
+        long[] newIds = new long[eventIds.length + 1];
+        double[] newWeights = new double[eventIds.length + 1];
+        System.arraycopy(eventIds, 0, newIds, 0, insertAt);
+        System.arraycopy(weights, 0, newWeights, 0, insertAt);
+        newIds[insertAt] = eventId;
+        newWeights[insertAt] = weight;
+        System.arraycopy(eventIds, insertAt, newIds, insertAt + 1, eventIds.length - insertAt);
+        System.arraycopy(weights, insertAt, newWeights, insertAt + 1, eventIds.length - insertAt);
+        return new UserEvents(newIds, newWeights);
+    }
+}
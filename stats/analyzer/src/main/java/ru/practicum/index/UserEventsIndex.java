@@ -0,0 +1,79 @@
+package ru.practicum.index;
+
+import jakarta.annotation.PostConstruct;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.practicum.model.ActionType;
+import ru.practicum.model.UserAction;
+import ru.practicum.repository.UserActionRepository;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Мероприятия, с которыми взаимодействовал каждый пользователь, и максимальный вес его действий по каждому.
+ * Используется для отсева уже знакомых рекомендаций и для предсказания оценок.
+ * Обновление создаёт новый {@link UserEvents}, поэтому читатели работают без блокировок.
+ * <p>
+ * Вместе с весами поддерживается сумма максимальных весов пользователей по каждому мероприятию:
+ * при росте максимума пользователя к сумме добавляется только прирост.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class UserEventsIndex {
+    final UserActionRepository userActionRepository;
+    final Map<Long, UserEvents> userEvents = new ConcurrentHashMap<>();
+    final Map<Long, Double> eventTotalWeights = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void load() {
+        long start = System.currentTimeMillis();
+        userActionRepository.scanUserEvents((userId, eventId, actionType) ->
+                add(userId, eventId, ActionType.valueOf(actionType).getWeight()));
+        log.info("Индекс мероприятий пользователей построен: {} пользователей за {} мс",
+                userEvents.size(), System.currentTimeMillis() - start);
+    }
+
+    public void addAll(Collection<UserAction> userActions) {
+        for (UserAction userAction : userActions) {
+            add(userAction.getUserId(), userAction.getEventId(), userAction.getActionType().getWeight());
+        }
+    }
+
+    public void add(long userId, long eventId, double weight) {
+        double[] increase = new double[1];
+        userEvents.compute(userId, (id, events) -> {
+            UserEvents current = events == null ? UserEvents.EMPTY : events;
+            double previous = current.weight(eventId);
+            if (previous >= weight) {
+                return current;
+            }
+            increase[0] = previous == UserEvents.NO_WEIGHT ? weight : weight - previous;
+            return current.with(eventId, weight);
+        });
+        if (increase[0] > 0) {
+            eventTotalWeights.merge(eventId, increase[0], Double::sum);
+        }
+    }
+
+    public UserEvents eventsOf(long userId) {
+        return userEvents.getOrDefault(userId, UserEvents.EMPTY);
+    }
+
+    /**
+     * @return сумма максимальных весов действий всех пользователей с мероприятием или 0, если действий не было
+     */
+    public double totalWeightOf(long eventId) {
+        return eventTotalWeights.getOrDefault(eventId, 0.0);
+    }
+
+    public boolean hasInteracted(long userId, long eventId) {
+        return eventsOf(userId).contains(eventId);
+    }
+}
@@ -10,7 +10,7 @@ import ru.practicum.model.UserAction;
 
 
 @Mapper(componentModel = "spring")
-public interface UserActionMapper {
+public interface UserActionEntityMapper {
     @Mapping(target = "id", ignore = true)
     @Mapping(target = "userId", source = "userId")
     @Mapping(target = "eventId", source = "eventId")
@@ -1,7 +1,15 @@
 package ru.practicum.model;
 
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+@Getter
+@RequiredArgsConstructor
 public enum ActionType {
-    VIEW,
-    REGISTER,
-    LIKE
+    VIEW(0.4),
+    REGISTER(0.8),
+    LIKE(1.0);
+
+    // Вес действия в оценке интереса пользователя к мероприятию
+    private final double weight;
 }
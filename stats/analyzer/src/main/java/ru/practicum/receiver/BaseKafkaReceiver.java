@@ -6,26 +6,40 @@ import lombok.AccessLevel;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.errors.WakeupException;
 import org.springframework.beans.factory.annotation.Value;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 @Slf4j
 @FieldDefaults(level = AccessLevel.PRIVATE)
 public abstract class BaseKafkaReceiver<T> {
+    static final long RETRY_BACKOFF_MS = 1000;
+
     @Value("${kafka.consumer.poll_timeout}")
     protected long pollTimeout;
 
     protected final KafkaConsumer<String, T> consumer;
     protected final ExecutorService executor = Executors.newSingleThreadExecutor();
     protected volatile boolean running = true;
+    // Сообщения, прочитанные, но ещё не обработанные и не зафиксированные
+    List<T> pending = new ArrayList<>();
+    // Смещения начала накопленной пачки по партициям для повторного чтения при ошибке
+    final Map<TopicPartition, Long> pendingStartOffsets = new HashMap<>();
+    long pendingSince;
 
     protected BaseKafkaReceiver(KafkaConsumer<String, T> consumer) {
         this.consumer = consumer;
@@ -34,10 +48,39 @@ public abstract class BaseKafkaReceiver<T> {
     protected abstract String getInputTopic();
     protected abstract void processMessage(T message);
 
+    /**
+     * Сколько сообщений накапливать перед обработкой. По умолчанию обрабатывается каждый poll.
+     */
+    protected int getBatchSize() {
+        return 1;
+    }
+
+    /**
+     * Максимальное время ожидания накопленных сообщений до обработки, мс.
+     */
+    protected long getFlushIntervalMs() {
+        return 0;
+    }
+
+    /**
+     * Обрабатывает накопленную пачку сообщений. По умолчанию — по одному, ошибка в сообщении не прерывает пачку.
+     * Наследники могут переопределить метод для пакетной записи; если он бросает исключение,
+     * смещения не фиксируются и пачка будет прочитана заново.
+     */
+    protected void processBatch(List<T> messages) {
+        for (T message : messages) {
+            try {
+                processMessage(message);
+            } catch (Exception e) {
+                log.error("Ошибка обработки сообщения: {}", message, e);
+            }
+        }
+    }
+
     @PostConstruct
     public void start() {
         log.info("Подписка consumer на топик {}", getInputTopic());
-        consumer.subscribe(Collections.singletonList(getInputTopic()));
+        consumer.subscribe(Collections.singletonList(getInputTopic()), new FlushOnRevokeListener());
         executor.submit(this::processMessages);
     }
 
@@ -53,26 +96,98 @@ public abstract class BaseKafkaReceiver<T> {
         while (running) {
             try {
                 ConsumerRecords<String, T> records = consumer.poll(Duration.ofMillis(pollTimeout));
-                log.info("Получено {} записей для обработки", records.count());
-
-                for (ConsumerRecord<String, T> record : records) {
-                    try {
-                        T message = record.value();
-                        log.info("Обработка сообщения: {}", message);
-                        processMessage(message);
-                    } catch (Exception e) {
-                        log.error("Ошибка обработки сообщения: {}", record.value(), e);
-                    }
-                }
-
                 if (!records.isEmpty()) {
-                    consumer.commitSync();
+                    log.debug("Получено {} записей для обработки", records.count());
+                    addPending(records);
+                }
+                if (isFlushDue()) {
+                    flushPending();
                 }
             } catch (WakeupException e) {
                 if (!running) break;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
             } catch (Exception e) {
                 log.error("Ошибка в основном цикле обработки", e);
             }
         }
+        // Накопленное на остановке обрабатываем сразу, иначе это придётся перечитывать после старта
+        try {
+            if (!pending.isEmpty()) {
+                flushPending();
+            }
+        } catch (Exception e) {
+            log.error("Ошибка обработки накопленных сообщений при остановке", e);
+        }
+    }
+
+    private void addPending(ConsumerRecords<String, T> records) {
+        if (pending.isEmpty()) {
+            pendingSince = System.currentTimeMillis();
+        }
+        for (TopicPartition partition : records.partitions()) {
+            List<ConsumerRecord<String, T>> partitionRecords = records.records(partition);
+            pendingStartOffsets.putIfAbsent(partition, partitionRecords.getFirst().offset());
+            for (ConsumerRecord<String, T> record : partitionRecords) {
+                pending.add(record.value());
+            }
+        }
+    }
+
+    private boolean isFlushDue() {
+        return !pending.isEmpty()
+                && (pending.size() >= getBatchSize()
+                || System.currentTimeMillis() - pendingSince >= getFlushIntervalMs());
+    }
+
+    /**
+     * Обрабатывает накопленные сообщения и только после успешной обработки фиксирует смещения.
+     * При ошибке позиции партиций возвращаются к началу накопленной пачки, и она будет прочитана повторно.
+     */
+    private void flushPending() throws InterruptedException {
+        try {
+            processBatch(pending);
+        } catch (Exception e) {
+            log.error("Ошибка обработки пачки из {} сообщений, пачка будет прочитана повторно", pending.size(), e);
+            rewind();
+            clearPending();
+            Thread.sleep(RETRY_BACKOFF_MS);
+            return;
+        }
+        clearPending();
+        consumer.commitSync();
+    }
+
+    // Возвращает позиции партиций к началу необработанной пачки
+    private void rewind() {
+        pendingStartOffsets.forEach(consumer::seek);
+    }
+
+    private void clearPending() {
+        pending = new ArrayList<>();
+        pendingStartOffsets.clear();
+    }
+
+    /**
+     * Перед отзывом партиций обрабатывает накопленные сообщения и фиксирует смещения,
+     * чтобы новый владелец партиций не прочитал их повторно.
+     */
+    private class FlushOnRevokeListener implements ConsumerRebalanceListener {
+        @Override
+        public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            try {
+                flushPending();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+        }
     }
 }
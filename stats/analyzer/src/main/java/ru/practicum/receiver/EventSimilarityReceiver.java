@@ -12,6 +12,8 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
 
+import java.util.List;
+
 import ru.practicum.service.EventSimilarityService;
 
 @Slf4j
@@ -37,5 +39,10 @@ public class EventSimilarityReceiver extends BaseKafkaReceiver<EventSimilarityAv
     protected void processMessage(EventSimilarityAvro message) {
         eventSimilarityService.process(message);
     }
+
+    @Override
+    protected void processBatch(List<EventSimilarityAvro> messages) {
+        eventSimilarityService.processBatch(messages);
+    }
 }
 
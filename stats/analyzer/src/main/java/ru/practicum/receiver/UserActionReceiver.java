@@ -10,6 +10,8 @@ import org.springframework.stereotype.Service;
 import ru.practicum.ewm.stats.avro.UserActionAvro;
 import ru.practicum.service.UserActionService;
 
+import java.util.List;
+
 @Slf4j
 @Service
 @FieldDefaults(level = AccessLevel.PRIVATE)
@@ -17,6 +19,13 @@ public class UserActionReceiver extends BaseKafkaReceiver<UserActionAvro> {
 
     @Value("${kafka.topics.user-actions}")
     String inputTopic;
+
+    @Value("${analyzer.user-actions.batch-size:500}")
+    int batchSize;
+
+    @Value("${analyzer.user-actions.flush-interval-ms:200}")
+    long flushIntervalMs;
+
     final UserActionService userActionService;
 
     public UserActionReceiver(KafkaConsumer<String, UserActionAvro> consumer,
@@ -34,4 +43,19 @@ public class UserActionReceiver extends BaseKafkaReceiver<UserActionAvro> {
     protected void processMessage(UserActionAvro message) {
         userActionService.process(message);
     }
+
+    @Override
+    protected void processBatch(List<UserActionAvro> messages) {
+        userActionService.processBatch(messages);
+    }
+
+    @Override
+    protected int getBatchSize() {
+        return batchSize;
+    }
+
+    @Override
+    protected long getFlushIntervalMs() {
+        return flushIntervalMs;
+    }
 }
@@ -0,0 +1,28 @@
+package ru.practicum.repository;
+
+import ru.practicum.model.EventSimilarity;
+
+import java.util.Collection;
+
+public interface EventSimilarityBatchRepository {
+    /**
+     * Вставляет или обновляет сходства пачкой: один оператор INSERT ... ON CONFLICT на всю пачку через JDBC batch.
+     * Пары в пачке должны быть уникальны.
+     */
+    void upsertAll(Collection<EventSimilarity> similarities);
+
+    /**
+     * Удаляет пары пачкой. Строка удаляется, только если она не новее удаления.
+     */
+    void deleteAll(Collection<EventSimilarity> similarities);
+
+    /**
+     * Построчно обходит всю таблицу сходств, не загружая её в память целиком.
+     */
+    void scanAll(SimilarityHandler handler);
+
+    @FunctionalInterface
+    interface SimilarityHandler {
+        void accept(long eventIdA, long eventIdB, double score);
+    }
+}
@@ -0,0 +1,69 @@
+package ru.practicum.repository;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.model.EventSimilarity;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class EventSimilarityBatchRepositoryImpl implements EventSimilarityBatchRepository {
+    // Более старое значение не перезаписывает более новое, если записи пришли не по порядку
+    static final String UPSERT_SQL = """
+            INSERT INTO event_similarities (event_id_a, event_id_b, similarity_score, created)
+            VALUES (?, ?, ?, ?)
+            ON CONFLICT (event_id_a, event_id_b) DO UPDATE
+            SET similarity_score = EXCLUDED.similarity_score,
+                created = EXCLUDED.created
+            WHERE event_similarities.created <= EXCLUDED.created
+            """;
+    static final String DELETE_SQL = """
+            DELETE FROM event_similarities
+            WHERE event_id_a = ? AND event_id_b = ? AND created <= ?
+            """;
+    static final String SCAN_SQL = "SELECT event_id_a, event_id_b, similarity_score FROM event_similarities";
+    static final int SCAN_FETCH_SIZE = 10_000;
+
+    final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void upsertAll(Collection<EventSimilarity> similarities) {
+        if (similarities.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = similarities.stream()
+                .map(s -> new Object[]{s.getEventIdA(), s.getEventIdB(), s.getScore(), Timestamp.from(s.getTimestamp())})
+                .toList();
+        jdbcTemplate.batchUpdate(UPSERT_SQL, args);
+    }
+
+    @Override
+    public void deleteAll(Collection<EventSimilarity> similarities) {
+        if (similarities.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = similarities.stream()
+                .map(s -> new Object[]{s.getEventIdA(), s.getEventIdB(), Timestamp.from(s.getTimestamp())})
+                .toList();
+        jdbcTemplate.batchUpdate(DELETE_SQL, args);
+    }
+
+    // Драйвер PostgreSQL читает курсором с fetchSize только вне режима autocommit, отсюда транзакция
+    @Override
+    @Transactional(readOnly = true)
+    public void scanAll(SimilarityHandler handler) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SCAN_SQL);
+            statement.setFetchSize(SCAN_FETCH_SIZE);
+            return statement;
+        }, (RowCallbackHandler) rs -> handler.accept(rs.getLong(1), rs.getLong(2), rs.getDouble(3)));
+    }
+}
@@ -0,0 +1,22 @@
+package ru.practicum.repository;
+
+import ru.practicum.model.UserAction;
+
+import java.util.Collection;
+
+public interface UserActionBatchRepository {
+    /**
+     * Добавляет действия пачкой через JDBC batch, без выборки сгенерированных идентификаторов.
+     */
+    void insertAll(Collection<UserAction> userActions);
+
+    /**
+     * Построчно обходит уникальные тройки (пользователь, мероприятие, тип действия) из истории действий.
+     */
+    void scanUserEvents(UserEventHandler handler);
+
+    @FunctionalInterface
+    interface UserEventHandler {
+        void accept(long userId, long eventId, String actionType);
+    }
+}
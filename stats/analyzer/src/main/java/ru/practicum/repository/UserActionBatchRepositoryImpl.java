@@ -0,0 +1,49 @@
+package ru.practicum.repository;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.model.UserAction;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class UserActionBatchRepositoryImpl implements UserActionBatchRepository {
+    static final String INSERT_SQL = """
+            INSERT INTO user_actions (user_id, event_id, action_type, created)
+            VALUES (?, ?, ?, ?)
+            """;
+    static final String SCAN_USER_EVENTS_SQL = "SELECT DISTINCT user_id, event_id, action_type FROM user_actions";
+    static final int SCAN_FETCH_SIZE = 10_000;
+
+    final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void insertAll(Collection<UserAction> userActions) {
+        if (userActions.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = userActions.stream()
+                .map(a -> new Object[]{a.getUserId(), a.getEventId(), a.getActionType().name(), Timestamp.from(a.getTimestamp())})
+                .toList();
+        jdbcTemplate.batchUpdate(INSERT_SQL, args);
+    }
+
+    // Драйвер PostgreSQL читает курсором с fetchSize только вне режима autocommit, отсюда транзакция
+    @Override
+    @Transactional(readOnly = true)
+    public void scanUserEvents(UserEventHandler handler) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SCAN_USER_EVENTS_SQL);
+            statement.setFetchSize(SCAN_FETCH_SIZE);
+            return statement;
+        }, (RowCallbackHandler) rs -> handler.accept(rs.getLong(1), rs.getLong(2), rs.getString(3)));
+    }
+}
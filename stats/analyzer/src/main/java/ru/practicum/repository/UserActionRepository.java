@@ -9,7 +9,7 @@ import ru.practicum.model.UserAction;
 import java.util.List;
 
 @Repository
-public interface UserActionRepository extends JpaRepository<UserAction, Long> {
+public interface UserActionRepository extends JpaRepository<UserAction, Long>, UserActionBatchRepository {
     @Query(value = """
         select *
         from user_actions
@@ -18,7 +18,4 @@ public interface UserActionRepository extends JpaRepository<UserAction, Long> {
         limit :limit
         """, nativeQuery = true)
     List<UserAction> getRecentUserActions(@Param("userId") long userId, @Param("limit") int limit);
-
-    @Query("select ua from UserAction ua where ua.eventId in :eventIds")
-    List<UserAction> getByEventIds(@Param("eventIds") List<Long> eventIds);
 }
@@ -2,6 +2,10 @@ package ru.practicum.service;
 
 import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
 
+import java.util.List;
+
 public interface EventSimilarityService {
     void process (EventSimilarityAvro eventSimilarityAvro);
+
+    void processBatch(List<EventSimilarityAvro> eventSimilarities);
 }
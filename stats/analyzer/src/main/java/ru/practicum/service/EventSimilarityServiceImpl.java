@@ -5,13 +5,18 @@ import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
+import ru.practicum.index.SimilarityIndex;
 import ru.practicum.mapper.EventSimilarityMapper;
 import ru.practicum.model.EventSimilarity;
 import ru.practicum.repository.EventSimilarityRepository;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
 
 @Service
 @Slf4j
@@ -20,32 +25,44 @@ import java.util.Optional;
 public class EventSimilarityServiceImpl implements EventSimilarityService {
     final EventSimilarityRepository eventSimilarityRepository;
     final EventSimilarityMapper mapper;
+    final SimilarityIndex similarityIndex;
 
 
     @Override
     public void process(EventSimilarityAvro eventSimilarityAvro) {
         Objects.requireNonNull(eventSimilarityAvro, "EventSimilarityAvro не может быть null");
-
-        eventSimilarityRepository
-                .findByEventIdAAndEventIdB(eventSimilarityAvro.getEventA(), eventSimilarityAvro.getEventB())
-                .ifPresentOrElse(
-                        existing -> updateSimilarity(eventSimilarityAvro, existing),
-                        () -> createSimilarity(eventSimilarityAvro)
-                );
+        processBatch(List.of(eventSimilarityAvro));
     }
 
-    private void createSimilarity(EventSimilarityAvro avro) {
-        log.info("Создание нового similarity из events {} and {}", avro.getEventA(), avro.getEventB());
-        EventSimilarity entity = mapper.toEntity(avro);
-        eventSimilarityRepository.save(entity);
-        log.info("Создан новый similarity с ID: {}", entity.getId());
+    /**
+     * Сохраняет пачку сходств одним пакетным upsert'ом вместо select + save на каждое сообщение.
+     * Внутри пачки для каждой пары остаётся последнее по метке времени значение:
+     * один INSERT ... ON CONFLICT не может обновить одну строку дважды.
+     * Нулевое сходство означает, что агрегатор удалил пару как затухшую: такая пара удаляется из таблицы и индекса.
+     */
+    @Override
+    @Transactional
+    public void processBatch(List<EventSimilarityAvro> eventSimilarities) {
+        Map<Pair, EventSimilarity> latest = new HashMap<>();
+        for (EventSimilarityAvro avro : eventSimilarities) {
+            EventSimilarity entity = mapper.toEntity(avro);
+            latest.merge(new Pair(entity.getEventIdA(), entity.getEventIdB()), entity,
+                    (current, candidate) -> candidate.getTimestamp().isBefore(current.getTimestamp()) ? current : candidate);
+        }
+        List<EventSimilarity> updated = new ArrayList<>(latest.size());
+        List<EventSimilarity> retracted = new ArrayList<>();
+        for (EventSimilarity similarity : latest.values()) {
+            (similarity.getScore() > 0 ? updated : retracted).add(similarity);
+        }
+        eventSimilarityRepository.upsertAll(updated);
+        eventSimilarityRepository.deleteAll(retracted);
+        // При откате транзакции пачка будет прочитана заново и те же значения повторно применятся к индексу
+        similarityIndex.updateAll(updated);
+        similarityIndex.removeAll(retracted);
+        log.info("Сохранено {} similarity, удалено {} из {} сообщений",
+                updated.size(), retracted.size(), eventSimilarities.size());
     }
 
-    private void updateSimilarity(EventSimilarityAvro avro, EventSimilarity existing) {
-        log.info("Обновление similarity для событий A {} и B {}", avro.getEventA(), avro.getEventB());
-        mapper.updateEntityFromAvro(avro, existing);
-        eventSimilarityRepository.save(existing);
-        log.info("Обновление similarity score до {}", existing.getScore());
+    private record Pair(long eventIdA, long eventIdB) {
     }
-
 }
@@ -0,0 +1,57 @@
+package ru.practicum.service;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.index.Neighbours;
+import ru.practicum.index.SimilarityIndex;
+import ru.practicum.index.UserEvents;
+
+/**
+ * Предсказывает оценку мероприятия пользователем по его собственной истории действий.
+ * Оценка — среднее весов действий пользователя с K наиболее похожими на кандидата мероприятиями,
+ * с которыми он взаимодействовал, взвешенное по сходству и сжатое к нулю на λ:
+ * <pre>
+ *     score(c) = Σ sim(c, n) · w(n) / (Σ sim(c, n) + λ)
+ * </pre>
+ * Без сжатия кандидат с одним слабо похожим соседом получает полный вес этого соседа и обгоняет кандидатов,
+ * похожих на многие мероприятия пользователя; сжатие понижает оценки, за которыми мало сходства.
+ * Соседи кандидата берутся из индекса сходства уже упорядоченными по убыванию, поэтому K ближайших
+ * оценённых находятся одним проходом без сортировки.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class RatingPredictor {
+    final SimilarityIndex similarityIndex;
+
+    @Value("${analyzer.prediction.neighbours:20}")
+    int neighbourCount;
+
+    // λ: сумма сходств, при которой оценка составляет половину взвешенного среднего
+    @Value("${analyzer.prediction.shrinkage:2.0}")
+    double shrinkage;
+
+    /**
+     * @return предсказанная оценка или 0, если пользователь не взаимодействовал ни с одним соседом кандидата
+     */
+    public double predict(UserEvents userEvents, long candidateId) {
+        Neighbours neighbours = similarityIndex.neighboursOf(candidateId);
+        double weightedSum = 0;
+        double similaritySum = 0;
+        int rated = 0;
+        for (int i = 0; i < neighbours.size() && rated < neighbourCount; i++) {
+            double weight = userEvents.weight(neighbours.eventId(i));
+            if (weight == UserEvents.NO_WEIGHT) {
+                continue;
+            }
+            double similarity = neighbours.score(i);
+            weightedSum += similarity * weight;
+            similaritySum += similarity;
+            rated++;
+        }
+        return similaritySum > 0 ? weightedSum / (similaritySum + shrinkage) : 0;
+    }
+}
@@ -4,34 +4,53 @@ import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import ru.practicum.dto.RecommendedEvent;
+import ru.practicum.index.Neighbours;
+import ru.practicum.index.SimilarityIndex;
+import ru.practicum.index.UserEvents;
+import ru.practicum.index.UserEventsIndex;
 import ru.practicum.mapper.RecommendationMapper;
-import ru.practicum.model.EventSimilarity;
 import ru.practicum.model.UserAction;
-import ru.practicum.repository.EventSimilarityRepository;
 import ru.practicum.repository.UserActionRepository;
 
+import java.util.ArrayList;
 import java.util.Collections;
-
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @RequiredArgsConstructor
 public class RecommendationServiceImpl implements RecommendationService {
-    static final double VIEW_WEIGHT = 0.4;
-    static final double REGISTER_WEIGHT = 0.8;
-    static final double LIKE_WEIGHT = 1.0;
+    static final Comparator<RecommendedEvent> BY_SCORE = Comparator.comparingDouble(RecommendedEvent::score);
     final UserActionRepository userActionRepository;
-    final EventSimilarityRepository eventSimilarityRepository;
+    final SimilarityIndex similarityIndex;
+    final UserEventsIndex userEventsIndex;
     final RecommendationMapper recommendationMapper;
+    final RatingPredictor ratingPredictor;
+
+    // Во сколько раз больше кандидатов, чем нужно рекомендаций, отбирается по сходству для предсказания оценки
+    @Value("${analyzer.prediction.candidates-per-result:5}")
+    int candidatesPerResult;
 
+    /**
+     * Рекомендует мероприятия по недавним действиям пользователя.
+     * Кандидаты — соседи этих мероприятий по сходству; из наиболее похожих кандидатов выбираются те,
+     * для которых {@link RatingPredictor} предсказывает наибольшую оценку.
+     *
+     * @param userId     ID пользователя
+     * @param maxResults максимальное количество рекомендаций
+     * @return рекомендации с предсказанной оценкой, по её убыванию
+     */
     @Override
     public List<RecommendedEvent> getRecommendationsForUser(long userId, int maxResults) {
         log.info("Получение рекомендаций for userId={}, limit={}", userId, maxResults);
@@ -40,15 +59,17 @@ public class RecommendationServiceImpl implements RecommendationService {
         if (userActions.isEmpty()) {
             return Collections.emptyList();
         }
-        // ID событий, с которыми уже взаимодействовал пользователь
-        Set<Long> userEventIds = extractUserEventIds(userActions);
-        List<EventSimilarity> similarEvents = findSimilarEventsForUser(userId, userActions);
-        return similarEvents.stream()
-                // Исключаем события, с которыми пользователь уже взаимодействовал
-                .filter(e -> !userEventIds.contains(e.getEventIdB()))
-                .limit(maxResults)
-                .map(this::convertToRecommendedEvent)
-                .collect(Collectors.toList());
+        UserEvents userEvents = userEventsIndex.eventsOf(userId);
+        Map<Long, Double> candidates = findSimilarEventsForUser(userEvents, userActions);
+        List<RecommendedEvent> shortlist = selectTop(candidates, maxResults * candidatesPerResult);
+        List<RecommendedEvent> predicted = new ArrayList<>(shortlist.size());
+        for (RecommendedEvent candidate : shortlist) {
+            predicted.add(new RecommendedEvent(candidate.eventId(),
+                    ratingPredictor.predict(userEvents, candidate.eventId())));
+        }
+        // Сортировка устойчивая: при равной оценке кандидаты остаются в порядке убывания сходства
+        predicted.sort(BY_SCORE.reversed());
+        return predicted.subList(0, Math.min(maxResults, predicted.size()));
     }
 
     /**
@@ -61,118 +82,98 @@ public class RecommendationServiceImpl implements RecommendationService {
     @Override
     public List<RecommendedEvent> getSimilarEvents(long userId, long eventId) {
         log.info("Поиск  similarEvents for eventId={} и userId {}", eventId, userId);
-
-        return eventSimilarityRepository.findUnseenSimilarEventsForUser(userId, eventId).stream()
-                .map(this::convertToRecommendedEvent)
-                .collect(Collectors.toList());
+        return findUnseenSimilarEvents(userId, eventId);
     }
 
     /**
-     * Вычисляет веса взаимодействий для списка событий
+     * Возвращает сумму максимальных весов действий пользователей для каждого события.
+     * Суммы поддерживаются инкрементально в {@link UserEventsIndex}, поэтому запрос не читает историю действий.
+     * События без действий в ответ не попадают.
      *
      * @param eventIds список ID событий
      * @return список событий с весами взаимодействий
      */
     @Override
     public List<RecommendedEvent> getInteractionsCount(List<Long> eventIds) {
-        log.info("Получение макс.весов действий для списка events={}", eventIds);
-        List<UserAction> userActions = userActionRepository.getByEventIds(eventIds);
-        Map<Long, Map<Long, Double>> maxWeights = calculateMaxWeights(userActions);
-        return getRecommendedEvent(maxWeights);
-    }
-
-    /**
-     * Преобразует структуру максимальных весов действий пользователей по событиям в список рекомендованных событий.
-     *
-     * @param maxWeights вложенная Map, где:
-     *                   - ключ верхнего уровня — идентификатор события (eventId),
-     *                   - значение — Map с ключом userId и значением максимального веса действия пользователя для события.
-     * @return список объектов {@link RecommendedEvent}, каждый из которых содержит идентификатор события и суммарный вес всех пользователей для этого события.
-     * <p>
-     * Метод суммирует максимальные веса всех пользователей для каждого события и формирует итоговый список рекомендаций.
-     */
-    private List<RecommendedEvent> getRecommendedEvent(Map<Long, Map<Long, Double>> maxWeights) {
-        return maxWeights.entrySet().stream()
-                .map(entry -> {
-                    long eventId = entry.getKey();
-                    double scoreSum = entry.getValue().values().stream()
-                            .mapToDouble(Double::doubleValue)
-                            .sum();
-
-                    return new RecommendedEvent(eventId, scoreSum);
-                })
-                .collect(Collectors.toList());
-    }
-
-    /**
-     * Вычисляет максимальный вес действий каждого пользователя по событиям.
-     *
-     * @param userActions список действий пользователей, где каждое действие связано с событием и пользователем
-     * @return вложенную Map, где:
-     * - ключ верхнего уровня — идентификатор события (eventId)
-     * - значение верхнего уровня — Map с ключом userId и значением максимального веса действия этого пользователя для события
-     * <p>
-     * Метод для каждого события и пользователя сохраняет максимальный вес действия,
-     * если один пользователь совершал несколько действий для одного события, то берется максимальный вес.
-     */
-    private Map<Long, Map<Long, Double>> calculateMaxWeights(List<UserAction> userActions) {
-        Map<Long, Map<Long, Double>> maxWeights = new HashMap<>();
-
-        for (UserAction ua : userActions) {
-            long eventId = ua.getEventId();
-            long userId = ua.getUserId();
-            double weight = calculateActionWeight(ua);
-
-            Map<Long, Double> userMap = maxWeights.computeIfAbsent(eventId, e -> new HashMap<>());
-            userMap.merge(userId, weight, Double::max);
+        log.debug("Получение макс.весов действий для списка events={}", eventIds);
+        List<RecommendedEvent> result = new ArrayList<>(eventIds.size());
+        for (long eventId : new LinkedHashSet<>(eventIds)) {
+            double totalWeight = userEventsIndex.totalWeightOf(eventId);
+            if (totalWeight > 0) {
+                result.add(new RecommendedEvent(eventId, totalWeight));
+            }
         }
-        return maxWeights;
+        return result;
     }
 
     /**
-     * Находит похожие события для списка действий пользователя
+     * Собирает кандидатов по всем недавним событиям пользователя за один проход по индексу сходства.
+     * Кандидат, похожий на несколько событий пользователя, учитывается один раз с наибольшим сходством.
      *
      * @param userActions список действий пользователя
-     * @return список похожих событий
+     * @return Map, где ключ — ID кандидата, значение — его наибольшее сходство с событиями пользователя
      */
-    private List<EventSimilarity> findSimilarEventsForUser(long userId, List<UserAction> userActions) {
-        return userActions.stream()
-                .flatMap(action ->
-                        eventSimilarityRepository.findUnseenSimilarEventsForUser(userId, action.getEventId()).stream()
-                )
-                .collect(Collectors.toList());
+    private Map<Long, Double> findSimilarEventsForUser(UserEvents userEvents, List<UserAction> userActions) {
+        Set<Long> sourceEventIds = new HashSet<>();
+        Map<Long, Double> candidates = new HashMap<>();
+        for (UserAction action : userActions) {
+            if (!sourceEventIds.add(action.getEventId())) {
+                continue;
+            }
+            Neighbours neighbours = similarityIndex.neighboursOf(action.getEventId());
+            for (int i = 0; i < neighbours.size(); i++) {
+                long neighbourId = neighbours.eventId(i);
+                if (!userEvents.contains(neighbourId)) {
+                    candidates.merge(neighbourId, neighbours.score(i), Math::max);
+                }
+            }
+        }
+        return candidates;
     }
 
     /**
-     * Извлекает ID событий из списка действий пользователя
+     * Выбирает limit кандидатов с наибольшим сходством через min-кучу размера limit,
+     * не сортируя всех кандидатов.
      *
-     * @param userActions список действий пользователя
-     * @return множество ID событий
+     * @param candidates кандидаты с их сходством
+     * @param limit      максимальное количество рекомендаций
+     * @return рекомендации по убыванию сходства
      */
-    private Set<Long> extractUserEventIds(List<UserAction> userActions) {
-        return userActions.stream()
-                .map(UserAction::getEventId)
-                .collect(Collectors.toSet());
+    private List<RecommendedEvent> selectTop(Map<Long, Double> candidates, int limit) {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+        PriorityQueue<RecommendedEvent> top = new PriorityQueue<>(limit, BY_SCORE);
+        for (Map.Entry<Long, Double> candidate : candidates.entrySet()) {
+            if (top.size() < limit) {
+                top.add(new RecommendedEvent(candidate.getKey(), candidate.getValue()));
+            } else if (candidate.getValue() > top.peek().score()) {
+                top.poll();
+                top.add(new RecommendedEvent(candidate.getKey(), candidate.getValue()));
+            }
+        }
+        List<RecommendedEvent> result = new ArrayList<>(top);
+        result.sort(BY_SCORE.reversed());
+        return result;
     }
 
     /**
-     * Преобразует EventSimilarity в RecommendedEvent
+     * Возвращает соседей события из индекса сходства по убыванию сходства,
+     * исключая события, с которыми пользователь уже взаимодействовал
      *
-     * @param similarity объект с информацией о похожем событии
-     * @return RecommendedEvent
+     * @param userId  ID пользователя
+     * @param eventId ID события
+     * @return список похожих событий
      */
-    private RecommendedEvent convertToRecommendedEvent(EventSimilarity similarity) {
-        return new RecommendedEvent(
-                similarity.getEventIdB(),
-                similarity.getScore()
-        );
-    }
-
-    private double calculateActionWeight(UserAction action) {
-        return switch (action.getActionType()) {
-            case VIEW -> VIEW_WEIGHT;
-            case REGISTER -> REGISTER_WEIGHT;
-            case LIKE -> LIKE_WEIGHT;
-        };
+    private List<RecommendedEvent> findUnseenSimilarEvents(long userId, long eventId) {
+        Neighbours neighbours = similarityIndex.neighboursOf(eventId);
+        List<RecommendedEvent> result = new ArrayList<>(neighbours.size());
+        for (int i = 0; i < neighbours.size(); i++) {
+            long neighbourId = neighbours.eventId(i);
+            if (!userEventsIndex.hasInteracted(userId, neighbourId)) {
+                result.add(new RecommendedEvent(neighbourId, neighbours.score(i)));
+            }
+        }
+        return result;
     }
 }
@@ -2,6 +2,10 @@ package ru.practicum.service;
 
 import ru.practicum.ewm.stats.avro.UserActionAvro;
 
+import java.util.List;
+
 public interface UserActionService {
     void process (UserActionAvro userActionAvro);
+
+    void processBatch(List<UserActionAvro> userActions);
 }
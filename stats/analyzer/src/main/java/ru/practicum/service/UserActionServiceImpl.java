@@ -5,27 +5,41 @@ import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.ewm.stats.avro.UserActionAvro;
-import ru.practicum.mapper.UserActionMapper;
+import ru.practicum.index.UserEventsIndex;
+import ru.practicum.mapper.UserActionEntityMapper;
 import ru.practicum.model.UserAction;
 import ru.practicum.repository.UserActionRepository;
 
+import java.util.List;
+
 @Service
 @Slf4j
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @RequiredArgsConstructor
 public class UserActionServiceImpl implements UserActionService {
     final UserActionRepository userActionRepository;
-    final UserActionMapper mapper;
+    final UserActionEntityMapper mapper;
+    final UserEventsIndex userEventsIndex;
 
     @Override
     public void process(UserActionAvro userActionAvro) {
-        saveUserAction(userActionAvro);
+        processBatch(List.of(userActionAvro));
     }
 
-    private void saveUserAction(UserActionAvro userActionAvro) {
-        log.info("Сохранение userActionAvro {} ", userActionAvro);
-        UserAction userAction = userActionRepository.save(mapper.toEntity(userActionAvro));
-        log.info("userActionAvro {} сохранена в базу данных", userActionAvro);
+    /**
+     * Сохраняет пачку действий одним JDBC batch в одной транзакции.
+     * Таблица только дополняется, поэтому каждое действие — отдельная вставка без предварительного чтения.
+     */
+    @Override
+    @Transactional
+    public void processBatch(List<UserActionAvro> userActions) {
+        List<UserAction> entities = userActions.stream()
+                .map(mapper::toEntity)
+                .toList();
+        userActionRepository.insertAll(entities);
+        userEventsIndex.addAll(entities);
+        log.debug("Сохранено {} действий пользователей", entities.size());
     }
 }
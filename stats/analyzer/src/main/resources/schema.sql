@@ -6,10 +6,21 @@ CREATE TABLE IF NOT EXISTS user_actions (
     created TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
 );
 
+CREATE INDEX IF NOT EXISTS idx_user_actions_user_created ON user_actions (user_id, created DESC);
+
 CREATE TABLE IF NOT EXISTS event_similarities (
     id INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
     event_id_a INT NOT NULL,
     event_id_b INT NOT NULL,
     similarity_score FLOAT NOT NULL,
     created TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
-);
\ No newline at end of file
+);
+
+-- Таблица, созданная до уникального индекса, может содержать несколько строк на пару: остаётся самая поздняя
+DELETE FROM event_similarities s
+USING event_similarities newer
+WHERE newer.event_id_a = s.event_id_a
+  AND newer.event_id_b = s.event_id_b
+  AND (newer.created > s.created OR (newer.created = s.created AND newer.id > s.id));
+
+CREATE UNIQUE INDEX IF NOT EXISTS uq_event_similarities_pair ON event_similarities (event_id_a, event_id_b);
@@ -0,0 +1,116 @@
+package ru.practicum.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import ru.practicum.aggregator.AggregationProcessor;
+import ru.practicum.aggregator.DecayProperties;
+import ru.practicum.aggregator.EventSimilarityCalculator;
+import ru.practicum.aggregator.FanoutProperties;
+import ru.practicum.benchmark.workload.Workload;
+import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Расчёт сходства в aggregator: одна операция — одно действие пользователя.
+ * <p>
+ * Перед каждой итерацией калькулятор создаётся заново и получает первую половину потока,
+ * чтобы измерения шли на состоянии работающего сервиса, а не на пустых таблицах.
+ * Измеряется вторая половина потока; если итерация успевает пройти её целиком, поток идёт по кругу,
+ * и повторные действия уже не меняют веса — в этом случае стоит увеличить параметр actions.
+ * Параметр maxUserEvents сравнивает полную историю пользователей (0) с ограниченным окном мероприятий:
+ * от него зависит хвост задержки на тяжёлых пользователях.
+ * Вариант updateWeightsLegacy измеряет прежнюю реализацию на вложенных ConcurrentHashMap на том же потоке;
+ * сравнивать его следует с updateWeights при maxUserEvents=0.
+ */
+public class AggregatorBenchmark extends StatsBenchmark {
+
+    @State(Scope.Thread)
+    public static class Pipeline {
+        @Param({"0", "500"})
+        int maxUserEvents;
+
+        EventSimilarityCalculator calculator;
+        AggregationProcessor processor;
+        UserActionAvro[] measured;
+        int next;
+
+        @Setup(Level.Iteration)
+        public void setUp(Workload workload) {
+            UserActionAvro[] stream = workload.stream();
+            int preloaded = stream.length / 2;
+            FanoutProperties fanout = new FanoutProperties();
+            fanout.setMaxUserEvents(maxUserEvents);
+            calculator = new EventSimilarityCalculator(new DecayProperties(), fanout);
+            processor = new AggregationProcessor(calculator);
+            for (int i = 0; i < preloaded; i++) {
+                processor.process(stream[i]);
+            }
+            measured = Arrays.copyOfRange(stream, preloaded, stream.length);
+            next = 0;
+        }
+
+        UserActionAvro nextAction() {
+            UserActionAvro action = measured[next];
+            next = next + 1 == measured.length ? 0 : next + 1;
+            return action;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class LegacyPipeline {
+        LegacyEventSimilarityCalculator calculator;
+        UserActionAvro[] measured;
+        int next;
+
+        @Setup(Level.Iteration)
+        public void setUp(Workload workload) {
+            UserActionAvro[] stream = workload.stream();
+            int preloaded = stream.length / 2;
+            calculator = new LegacyEventSimilarityCalculator();
+            for (int i = 0; i < preloaded; i++) {
+                calculator.updateWeights(stream[i].getUserId(), stream[i].getEventId(), weight(stream[i]));
+            }
+            measured = Arrays.copyOfRange(stream, preloaded, stream.length);
+            next = 0;
+        }
+
+        UserActionAvro nextAction() {
+            UserActionAvro action = measured[next];
+            next = next + 1 == measured.length ? 0 : next + 1;
+            return action;
+        }
+    }
+
+    @Benchmark
+    public List<EventSimilarityAvro> process(Pipeline pipeline) {
+        return pipeline.processor.process(pipeline.nextAction());
+    }
+
+    @Benchmark
+    public List<EventSimilarityAvro> updateWeights(Pipeline pipeline) {
+        UserActionAvro action = pipeline.nextAction();
+        return pipeline.calculator.updateWeights(action.getUserId(), action.getEventId(), weight(action),
+                action.getTimestamp().toEpochMilli());
+    }
+
+    @Benchmark
+    public List<EventSimilarityAvro> updateWeightsLegacy(LegacyPipeline pipeline) {
+        UserActionAvro action = pipeline.nextAction();
+        return pipeline.calculator.updateWeights(action.getUserId(), action.getEventId(), weight(action));
+    }
+
+    private static double weight(UserActionAvro action) {
+        return switch (action.getActionType()) {
+            case VIEW -> 0.4;
+            case REGISTER -> 0.8;
+            case LIKE -> 1.0;
+        };
+    }
+}
@@ -0,0 +1,120 @@
+package ru.practicum.benchmark;
+
+import ru.practicum.aggregator.EventSimilarityCalculator;
+import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.index.SimilarityIndex;
+import ru.practicum.index.UserEventsIndex;
+import ru.practicum.mapper.RecommendationMapperImpl;
+import ru.practicum.model.ActionType;
+import ru.practicum.model.UserAction;
+import ru.practicum.repository.UserActionRepository;
+import ru.practicum.service.RatingPredictor;
+import ru.practicum.service.RecommendationServiceImpl;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Состояние analyzer, построенное по потоку действий так же, как в работающем сервисе:
+ * действия проходят через калькулятор сходства, последнее значение каждой пары попадает в {@link SimilarityIndex},
+ * веса действий — в {@link UserEventsIndex}. Недавние действия пользователя, которые сервис читает из БД,
+ * отдаются из памяти.
+ */
+final class AnalyzerModel {
+    static final int RECENT_ACTIONS_KEPT = 100;
+    // Значения по умолчанию из конфигурации analyzer
+    static final int SIMILARITY_INDEX_CAPACITY = 100;
+    static final int PREDICTION_NEIGHBOURS = 20;
+    static final double PREDICTION_SHRINKAGE = 2.0;
+    static final int CANDIDATES_PER_RESULT = 5;
+
+    final SimilarityIndex similarityIndex;
+    final UserEventsIndex userEventsIndex;
+    final RecommendationServiceImpl service;
+    // ID пользователя → его последние действия, от новых к старым
+    final Map<Long, List<UserAction>> recentActions;
+
+    private AnalyzerModel(SimilarityIndex similarityIndex, UserEventsIndex userEventsIndex,
+                          Map<Long, List<UserAction>> recentActions) {
+        this.similarityIndex = similarityIndex;
+        this.userEventsIndex = userEventsIndex;
+        this.recentActions = recentActions;
+        RatingPredictor ratingPredictor = new RatingPredictor(similarityIndex);
+        Fields.set(ratingPredictor, "neighbourCount", PREDICTION_NEIGHBOURS);
+        Fields.set(ratingPredictor, "shrinkage", PREDICTION_SHRINKAGE);
+        service = new RecommendationServiceImpl(recentActionsRepository(recentActions), similarityIndex,
+                userEventsIndex, new RecommendationMapperImpl(), ratingPredictor);
+        Fields.set(service, "candidatesPerResult", CANDIDATES_PER_RESULT);
+    }
+
+    /**
+     * Строит состояние по действиям actions[0, to).
+     */
+    static AnalyzerModel build(UserActionAvro[] actions, int to) {
+        Map<Long, List<UserAction>> recentActions = new HashMap<>();
+        SimilarityIndex similarityIndex = new SimilarityIndex(null);
+        Fields.set(similarityIndex, "capacity", SIMILARITY_INDEX_CAPACITY);
+        UserEventsIndex userEventsIndex = new UserEventsIndex(null);
+        EventSimilarityCalculator calculator = new EventSimilarityCalculator();
+        Map<Long, EventSimilarityAvro> latestPairs = new HashMap<>();
+        for (int i = 0; i < to; i++) {
+            UserActionAvro action = actions[i];
+            ActionType type = ActionType.valueOf(action.getActionType().name());
+            userEventsIndex.add(action.getUserId(), action.getEventId(), type.getWeight());
+            recentActions.computeIfAbsent(action.getUserId(), id -> new ArrayList<>()).add(toEntity(action, type));
+            for (EventSimilarityAvro similarity : calculator.updateWeights(
+                    action.getUserId(), action.getEventId(), type.getWeight(),
+                    action.getTimestamp().toEpochMilli())) {
+                latestPairs.put(similarity.getEventA() << 32 | similarity.getEventB(), similarity);
+            }
+        }
+        latestPairs.values().forEach(s -> similarityIndex.update(s.getEventA(), s.getEventB(), s.getScore()));
+        recentActions.replaceAll((userId, userActions) -> newestFirst(userActions));
+        return new AnalyzerModel(similarityIndex, userEventsIndex, recentActions);
+    }
+
+    /**
+     * Последние действия пользователя, как их возвращает {@link UserActionRepository#getRecentUserActions}.
+     */
+    List<UserAction> recentActionsOf(long userId, int limit) {
+        List<UserAction> actions = recentActions.getOrDefault(userId, List.of());
+        return actions.subList(0, Math.min(limit, actions.size()));
+    }
+
+    private static UserAction toEntity(UserActionAvro action, ActionType type) {
+        UserAction entity = new UserAction();
+        entity.setUserId(action.getUserId());
+        entity.setEventId(action.getEventId());
+        entity.setActionType(type);
+        entity.setTimestamp(action.getTimestamp());
+        return entity;
+    }
+
+    private static List<UserAction> newestFirst(List<UserAction> actions) {
+        List<UserAction> recent = new ArrayList<>(actions.subList(Math.max(0, actions.size() - RECENT_ACTIONS_KEPT),
+                actions.size()));
+        Collections.reverse(recent);
+        return recent;
+    }
+
+    /**
+     * Репозиторий, отвечающий на getRecentUserActions из памяти; остальные методы здесь не вызываются.
+     */
+    private static UserActionRepository recentActionsRepository(Map<Long, List<UserAction>> recentActions) {
+        return (UserActionRepository) Proxy.newProxyInstance(
+                UserActionRepository.class.getClassLoader(),
+                new Class<?>[]{UserActionRepository.class},
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("getRecentUserActions")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    List<UserAction> actions = recentActions.getOrDefault((Long) args[0], List.of());
+                    return actions.subList(0, Math.min((Integer) args[1], actions.size()));
+                });
+    }
+}
@@ -0,0 +1,206 @@
+package ru.practicum.benchmark;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.aggregator.AggregationProcessor;
+import ru.practicum.aggregator.EventSimilarityCalculator;
+import ru.practicum.benchmark.workload.Workload;
+import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.mapper.EventSimilarityMapperImpl;
+import ru.practicum.mapper.UserActionEntityMapperImpl;
+import ru.practicum.model.EventSimilarity;
+import ru.practicum.model.UserAction;
+import ru.practicum.repository.EventSimilarityBatchRepositoryImpl;
+import ru.practicum.repository.UserActionBatchRepositoryImpl;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Запись сообщений analyzer в PostgreSQL: одна операция — одно сообщение, сообщения приходят пачками по {@link #POLL}.
+ * <p>
+ * Поток сходств получается прогоном потока действий {@link Workload} через aggregator. Варианты upsert* и insert*
+ * пишут пачку через {@link EventSimilarityBatchRepositoryImpl} и {@link UserActionBatchRepositoryImpl} в одной
+ * транзакции, как сервисы analyzer; сходства перед этим сводятся к последнему значению пары, как в
+ * EventSimilarityServiceImpl. Варианты *PerRecord повторяют прежний путь на чистом JDBC: для сходства —
+ * SELECT по паре и INSERT или UPDATE, для действия — отдельный INSERT, каждый оператор в своей транзакции.
+ * Прежний путь шёл через JPA и делал не меньше запросов, так что его оценка здесь скорее завышена.
+ * <p>
+ * По умолчанию запускается встроенный PostgreSQL; параметр jdbcUrl направляет бенчмарк в свою БД, например
+ * {@code -p jdbcUrl=jdbc:postgresql://localhost:5435/analyzer-db?user=analyzer&password=analyzer}.
+ * Таблицы создаются из schema.sql analyzer и очищаются перед каждой итерацией.
+ */
+public class AnalyzerStorageBenchmark extends StatsBenchmark {
+    static final int POLL = 500;
+    static final int MAX_SIMILARITIES = 200_000;
+
+    static final String SELECT_PAIR_SQL = "SELECT id FROM event_similarities WHERE event_id_a = ? AND event_id_b = ?";
+    static final String INSERT_SIMILARITY_SQL = """
+            INSERT INTO event_similarities (event_id_a, event_id_b, similarity_score, created)
+            VALUES (?, ?, ?, ?)
+            """;
+    static final String UPDATE_SIMILARITY_SQL = "UPDATE event_similarities SET similarity_score = ?, created = ? WHERE id = ?";
+    static final String INSERT_ACTION_SQL = """
+            INSERT INTO user_actions (user_id, event_id, action_type, created)
+            VALUES (?, ?, ?, ?)
+            """;
+
+    @State(Scope.Benchmark)
+    public static class Database {
+        // Пусто — встроенный PostgreSQL
+        @Param("")
+        String jdbcUrl;
+
+        EmbeddedPostgres postgres;
+        SingleConnectionDataSource dataSource;
+        JdbcTemplate jdbcTemplate;
+        TransactionTemplate transactionTemplate;
+        EventSimilarityBatchRepositoryImpl similarityRepository;
+        UserActionBatchRepositoryImpl actionRepository;
+
+        @Setup(Level.Trial)
+        public void start() throws IOException {
+            String url = jdbcUrl;
+            if (url.isEmpty()) {
+                postgres = EmbeddedPostgres.start();
+                url = postgres.getJdbcUrl("postgres", "postgres");
+            }
+            // Как в настройках analyzer: драйвер склеивает пачку INSERT в многострочные операторы
+            url += (url.contains("?") ? "&" : "?") + "reWriteBatchedInserts=true";
+            dataSource = new SingleConnectionDataSource(url, true);
+            new ResourceDatabasePopulator(new ClassPathResource("schema.sql")).execute(dataSource);
+            jdbcTemplate = new JdbcTemplate(dataSource);
+            transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+            similarityRepository = new EventSimilarityBatchRepositoryImpl(jdbcTemplate);
+            actionRepository = new UserActionBatchRepositoryImpl(jdbcTemplate);
+        }
+
+        @Setup(Level.Iteration)
+        public void truncate() {
+            jdbcTemplate.execute("TRUNCATE event_similarities, user_actions");
+        }
+
+        @TearDown(Level.Trial)
+        public void stop() throws IOException {
+            dataSource.destroy();
+            if (postgres != null) {
+                postgres.close();
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Messages {
+        List<List<EventSimilarity>> similarityPolls;
+        List<List<UserAction>> actionPolls;
+        int nextSimilarities;
+        int nextActions;
+
+        @Setup(Level.Trial)
+        public void setUp(Workload workload) {
+            EventSimilarityMapperImpl similarityMapper = new EventSimilarityMapperImpl();
+            UserActionEntityMapperImpl actionMapper = new UserActionEntityMapperImpl();
+            AggregationProcessor processor = new AggregationProcessor(new EventSimilarityCalculator());
+            List<EventSimilarity> similarities = new ArrayList<>();
+            List<UserAction> actions = new ArrayList<>();
+            for (UserActionAvro action : workload.stream()) {
+                actions.add(actionMapper.toEntity(action));
+                if (similarities.size() < MAX_SIMILARITIES) {
+                    for (EventSimilarityAvro similarity : processor.process(action)) {
+                        similarities.add(similarityMapper.toEntity(similarity));
+                    }
+                }
+            }
+            similarityPolls = split(similarities);
+            actionPolls = split(actions);
+        }
+
+        List<EventSimilarity> nextSimilarityPoll() {
+            List<EventSimilarity> poll = similarityPolls.get(nextSimilarities);
+            nextSimilarities = nextSimilarities + 1 == similarityPolls.size() ? 0 : nextSimilarities + 1;
+            return poll;
+        }
+
+        List<UserAction> nextActionPoll() {
+            List<UserAction> poll = actionPolls.get(nextActions);
+            nextActions = nextActions + 1 == actionPolls.size() ? 0 : nextActions + 1;
+            return poll;
+        }
+
+        private static <T> List<List<T>> split(List<T> messages) {
+            List<List<T>> polls = new ArrayList<>();
+            for (int from = 0; from + POLL <= messages.size(); from += POLL) {
+                polls.add(List.copyOf(messages.subList(from, from + POLL)));
+            }
+            return polls;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POLL)
+    public void upsertSimilarities(Database database, Messages messages) {
+        List<EventSimilarity> poll = messages.nextSimilarityPoll();
+        database.transactionTemplate.executeWithoutResult(status ->
+                database.similarityRepository.upsertAll(latestPerPair(poll)));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POLL)
+    public void upsertSimilaritiesPerRecord(Database database, Messages messages) {
+        JdbcTemplate jdbcTemplate = database.jdbcTemplate;
+        for (EventSimilarity similarity : messages.nextSimilarityPoll()) {
+            Timestamp created = Timestamp.from(similarity.getTimestamp());
+            List<Long> ids = jdbcTemplate.queryForList(SELECT_PAIR_SQL, Long.class,
+                    similarity.getEventIdA(), similarity.getEventIdB());
+            if (ids.isEmpty()) {
+                jdbcTemplate.update(INSERT_SIMILARITY_SQL,
+                        similarity.getEventIdA(), similarity.getEventIdB(), similarity.getScore(), created);
+            } else {
+                jdbcTemplate.update(UPDATE_SIMILARITY_SQL, similarity.getScore(), created, ids.getFirst());
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POLL)
+    public void insertActions(Database database, Messages messages) {
+        List<UserAction> poll = messages.nextActionPoll();
+        database.transactionTemplate.executeWithoutResult(status -> database.actionRepository.insertAll(poll));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POLL)
+    public void insertActionsPerRecord(Database database, Messages messages) {
+        for (UserAction action : messages.nextActionPoll()) {
+            database.jdbcTemplate.update(INSERT_ACTION_SQL, action.getUserId(), action.getEventId(),
+                    action.getActionType().name(), Timestamp.from(action.getTimestamp()));
+        }
+    }
+
+    private static List<EventSimilarity> latestPerPair(List<EventSimilarity> poll) {
+        Map<List<Long>, EventSimilarity> latest = new LinkedHashMap<>();
+        for (EventSimilarity similarity : poll) {
+            latest.merge(List.of(similarity.getEventIdA(), similarity.getEventIdB()), similarity,
+                    (current, candidate) -> candidate.getTimestamp().isBefore(current.getTimestamp()) ? current : candidate);
+        }
+        return new ArrayList<>(latest.values());
+    }
+}
@@ -0,0 +1,62 @@
+package ru.practicum.benchmark;
+
+import com.google.protobuf.Timestamp;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import ru.practicum.benchmark.workload.Workload;
+import ru.practicum.evm.stats.proto.ActionTypeProto;
+import ru.practicum.evm.stats.proto.UserActionProto;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.mapper.UserActionMapper;
+import ru.practicum.mapper.UserActionMapperImpl;
+
+/**
+ * Преобразование действия из gRPC-сообщения в Avro-запись в collector.
+ */
+public class CollectorMapperBenchmark extends StatsBenchmark {
+
+    @State(Scope.Thread)
+    public static class Mapping {
+        UserActionMapper mapper;
+        UserActionProto[] requests;
+        int next;
+
+        @Setup
+        public void setUp(Workload workload) {
+            mapper = new UserActionMapperImpl();
+            UserActionAvro[] stream = workload.stream();
+            requests = new UserActionProto[stream.length];
+            for (int i = 0; i < stream.length; i++) {
+                requests[i] = toProto(stream[i]);
+            }
+        }
+
+        UserActionProto nextRequest() {
+            UserActionProto request = requests[next];
+            next = next + 1 == requests.length ? 0 : next + 1;
+            return request;
+        }
+
+        private static UserActionProto toProto(UserActionAvro action) {
+            return UserActionProto.newBuilder()
+                    .setUserId(action.getUserId())
+                    .setEventId(action.getEventId())
+                    .setActionType(switch (action.getActionType()) {
+                        case VIEW -> ActionTypeProto.ACTION_VIEW;
+                        case REGISTER -> ActionTypeProto.ACTION_REGISTER;
+                        case LIKE -> ActionTypeProto.ACTION_LIKE;
+                    })
+                    .setTimestamp(Timestamp.newBuilder()
+                            .setSeconds(action.getTimestamp().getEpochSecond())
+                            .setNanos(action.getTimestamp().getNano()))
+                    .build();
+        }
+    }
+
+    @Benchmark
+    public UserActionAvro mapToAvro(Mapping mapping) {
+        return mapping.mapper.mapToAvro(mapping.nextRequest());
+    }
+}
@@ -0,0 +1,21 @@
+package ru.practicum.benchmark;
+
+import java.lang.reflect.Field;
+
+/**
+ * Выставляет поля, которые в сервисах заполняет Spring через @Value: бенчмарки создают классы без контекста.
+ */
+final class Fields {
+    private Fields() {
+    }
+
+    static void set(Object target, String name, Object value) {
+        try {
+            Field field = target.getClass().getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Не удалось выставить поле " + name + " в " + target.getClass(), e);
+        }
+    }
+}
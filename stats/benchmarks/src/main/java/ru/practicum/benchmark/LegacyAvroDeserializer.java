@@ -0,0 +1,31 @@
+package ru.practicum.benchmark;
+
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.Decoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.specific.SpecificDatumReader;
+import org.apache.avro.specific.SpecificRecordBase;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Прежняя реализация {@link kafka.deserializer.BaseAvroDeserializer} — точка отсчёта для {@link SerializationBenchmark}:
+ * новый decoder и новая запись на каждое сообщение.
+ */
+class LegacyAvroDeserializer<T extends SpecificRecordBase> {
+    private final DatumReader<T> reader;
+
+    LegacyAvroDeserializer(Class<T> targetType) {
+        this.reader = new SpecificDatumReader<>(targetType);
+    }
+
+    T deserialize(byte[] data) {
+        try {
+            Decoder decoder = DecoderFactory.get().binaryDecoder(data, null);
+            return reader.read(null, decoder);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package ru.practicum.benchmark;
+
+import org.apache.avro.Schema;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DatumWriter;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.avro.specific.SpecificDatumWriter;
+import org.apache.avro.specific.SpecificRecordBase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Прежняя реализация {@link kafka.serializer.AvroSerializer} — точка отсчёта для {@link SerializationBenchmark}:
+ * новый поток и encoder на каждую запись, кэш writer'ов в HashMap.
+ */
+class LegacyAvroSerializer {
+    private final EncoderFactory encoderFactory = EncoderFactory.get();
+    private final Map<Schema, DatumWriter<SpecificRecordBase>> writers = new HashMap<>();
+
+    byte[] serialize(SpecificRecordBase data) {
+        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            BinaryEncoder encoder = encoderFactory.binaryEncoder(out, null);
+            DatumWriter<SpecificRecordBase> writer = writers.computeIfAbsent(data.getSchema(), SpecificDatumWriter::new);
+            writer.write(data, encoder);
+            encoder.flush();
+            return out.toByteArray();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package ru.practicum.benchmark;
+
+import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Прежняя реализация {@link ru.practicum.aggregator.EventSimilarityCalculator} — точка отсчёта
+ * для {@link AggregatorBenchmark}: вложенные ConcurrentHashMap с ключами Long и весами Double,
+ * без затухания и без окна мероприятий пользователя.
+ */
+class LegacyEventSimilarityCalculator {
+    // ID мероприятия → (ID пользователя → максимальный вес действия)
+    private final Map<Long, Map<Long, Double>> eventUserWeights = new ConcurrentHashMap<>();
+    // ID мероприятия → сумма всех весов пользователей
+    private final Map<Long, Double> eventTotalWeights = new ConcurrentHashMap<>();
+    // ID мероприятия A → (ID мероприятия B → сумма минимальных весов общих пользователей)
+    private final Map<Long, Map<Long, Double>> minWeightsSums = new ConcurrentHashMap<>();
+    // ID пользователя → список ID мероприятий, с которыми он взаимодействовал
+    private final Map<Long, List<Long>> userEvents = new ConcurrentHashMap<>();
+
+    List<EventSimilarityAvro> updateWeights(long userId, long eventId, double newWeight) {
+        if (!eventUserWeights.containsKey(eventId)) {
+            return handleNewEvent(userId, eventId, newWeight);
+        }
+        Map<Long, Double> eventUsers = eventUserWeights.get(eventId);
+        if (!eventUsers.containsKey(userId)) {
+            return handleNewUserForEvent(userId, eventId, newWeight);
+        }
+        double oldWeight = eventUsers.get(userId);
+        if (newWeight > oldWeight) {
+            return handleWeightUpdate(userId, eventId, oldWeight, newWeight);
+        }
+        return Collections.emptyList();
+    }
+
+    private List<EventSimilarityAvro> handleNewEvent(long userId, long eventId, double newWeight) {
+        Map<Long, Double> newMap = new ConcurrentHashMap<>();
+        newMap.put(userId, newWeight);
+        eventUserWeights.put(eventId, newMap);
+        eventTotalWeights.put(eventId, newWeight);
+        addUserEvent(userId, eventId);
+        updateMinWeightsForUser(userId, eventId, 0.0, newWeight);
+        return generateSimilaritiesForUserEvents(userId, eventId);
+    }
+
+    private List<EventSimilarityAvro> handleNewUserForEvent(long userId, long eventId, double newWeight) {
+        eventUserWeights.get(eventId).put(userId, newWeight);
+        eventTotalWeights.merge(eventId, newWeight, Double::sum);
+        addUserEvent(userId, eventId);
+        updateMinWeightsForUser(userId, eventId, 0.0, newWeight);
+        return generateSimilaritiesForUserEvents(userId, eventId);
+    }
+
+    private List<EventSimilarityAvro> handleWeightUpdate(long userId, long eventId, double oldWeight, double newWeight) {
+        eventUserWeights.get(eventId).put(userId, newWeight);
+        eventTotalWeights.merge(eventId, newWeight - oldWeight, Double::sum);
+        updateMinWeightsForUser(userId, eventId, oldWeight, newWeight);
+        return generateSimilaritiesForUserEvents(userId, eventId);
+    }
+
+    private void addUserEvent(long userId, long eventId) {
+        userEvents.compute(userId, (k, events) -> {
+            if (events == null) {
+                events = new ArrayList<>();
+            }
+            events.add(eventId);
+            return events;
+        });
+    }
+
+    private void updateMinWeightsForUser(long userId, long eventId, double oldWeight, double newWeight) {
+        List<Long> userEventIds = userEvents.get(userId);
+        if (userEventIds == null) {
+            return;
+        }
+        for (Long otherEventId : userEventIds) {
+            if (otherEventId.equals(eventId)) {
+                continue;
+            }
+            double otherWeight = eventUserWeights.get(otherEventId).get(userId);
+            double delta = Math.min(newWeight, otherWeight) - Math.min(oldWeight, otherWeight);
+            if (delta != 0) {
+                updateMinWeightsSum(eventId, otherEventId, delta);
+            }
+        }
+    }
+
+    private List<EventSimilarityAvro> generateSimilaritiesForUserEvents(long userId, long eventId) {
+        List<EventSimilarityAvro> similarities = new ArrayList<>();
+        List<Long> userEventIds = userEvents.get(userId);
+        if (userEventIds == null) {
+            return similarities;
+        }
+        for (Long otherEventId : userEventIds) {
+            if (otherEventId.equals(eventId)) {
+                continue;
+            }
+            double numerator = getMinWeightsSum(eventId, otherEventId);
+            double denominator = Math.sqrt(eventTotalWeights.get(eventId)) * Math.sqrt(eventTotalWeights.get(otherEventId));
+            if (denominator == 0) {
+                continue;
+            }
+            similarities.add(EventSimilarityAvro.newBuilder()
+                    .setEventA(Math.min(eventId, otherEventId))
+                    .setEventB(Math.max(eventId, otherEventId))
+                    .setScore(numerator / denominator)
+                    .setTimestamp(Instant.now())
+                    .build());
+        }
+        similarities.sort(Comparator
+                .comparing(EventSimilarityAvro::getEventA)
+                .thenComparing(EventSimilarityAvro::getEventB));
+        return similarities;
+    }
+
+    private void updateMinWeightsSum(long eventA, long eventB, double delta) {
+        long first = Math.min(eventA, eventB);
+        long second = Math.max(eventA, eventB);
+        minWeightsSums.compute(first, (k, innerMap) -> {
+            if (innerMap == null) {
+                innerMap = new ConcurrentHashMap<>();
+            }
+            innerMap.merge(second, delta, Double::sum);
+            return innerMap;
+        });
+    }
+
+    private double getMinWeightsSum(long eventA, long eventB) {
+        long first = Math.min(eventA, eventB);
+        long second = Math.max(eventA, eventB);
+        return minWeightsSums.getOrDefault(first, Collections.emptyMap()).getOrDefault(second, 0.0);
+    }
+}
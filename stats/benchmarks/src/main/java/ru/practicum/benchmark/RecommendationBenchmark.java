@@ -0,0 +1,81 @@
+package ru.practicum.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import ru.practicum.benchmark.workload.Workload;
+import ru.practicum.dto.RecommendedEvent;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.model.UserAction;
+import ru.practicum.service.RecommendationServiceImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ранжирование рекомендаций в analyzer.
+ * <p>
+ * Состояние analyzer строится по всему потоку действий в {@link AnalyzerModel}; недавние действия пользователя,
+ * которые сервис читает из БД, отдаются из памяти, поэтому измеряется только ранжирование.
+ * Пользователи для запросов выбираются по тому же Zipf, что и в потоке.
+ */
+public class RecommendationBenchmark extends StatsBenchmark {
+    static final int QUERIES = 4096;
+
+    @State(Scope.Benchmark)
+    public static class Analyzer {
+        @Param("10")
+        public int maxResults;
+
+        RecommendationServiceImpl service;
+        long[] queryUsers;
+        long[] queryEvents;
+        List<List<Long>> queryEventLists;
+
+        @Setup
+        public void setUp(Workload workload) {
+            UserActionAvro[] stream = workload.stream();
+            AnalyzerModel model = AnalyzerModel.build(stream, stream.length);
+            service = model.service;
+
+            queryUsers = workload.sampleUsers(QUERIES);
+            queryEvents = new long[QUERIES];
+            queryEventLists = new ArrayList<>(QUERIES);
+            for (int i = 0; i < QUERIES; i++) {
+                List<UserAction> userActions = model.recentActionsOf(queryUsers[i], AnalyzerModel.RECENT_ACTIONS_KEPT);
+                queryEvents[i] = userActions.isEmpty() ? 1 : userActions.get(0).getEventId();
+                queryEventLists.add(userActions.stream().limit(maxResults).map(UserAction::getEventId).toList());
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        int nextQuery() {
+            int query = next;
+            next = next + 1 == QUERIES ? 0 : next + 1;
+            return query;
+        }
+    }
+
+    @Benchmark
+    public List<RecommendedEvent> recommendationsForUser(Analyzer analyzer, Cursor cursor) {
+        int query = cursor.nextQuery();
+        return analyzer.service.getRecommendationsForUser(analyzer.queryUsers[query], analyzer.maxResults);
+    }
+
+    @Benchmark
+    public List<RecommendedEvent> similarEvents(Analyzer analyzer, Cursor cursor) {
+        int query = cursor.nextQuery();
+        return analyzer.service.getSimilarEvents(analyzer.queryUsers[query], analyzer.queryEvents[query]);
+    }
+
+    @Benchmark
+    public List<RecommendedEvent> interactionsCount(Analyzer analyzer, Cursor cursor) {
+        return analyzer.service.getInteractionsCount(analyzer.queryEventLists.get(cursor.nextQuery()));
+    }
+}
@@ -0,0 +1,218 @@
+package ru.practicum.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import ru.practicum.benchmark.workload.Workload;
+import ru.practicum.dto.RecommendedEvent;
+import ru.practicum.ewm.stats.avro.ActionTypeAvro;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.index.Neighbours;
+import ru.practicum.index.UserEvents;
+import ru.practicum.model.UserAction;
+import ru.practicum.service.RecommendationServiceImpl;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Офлайн-проверка качества рекомендаций пользователю на истории действий.
+ * <p>
+ * Поток действий делится по времени: по первой части строится состояние analyzer ({@link AnalyzerModel}),
+ * вторая откладывается. Для каждого пользователя, который в отложенной части взаимодействовал
+ * с новыми для себя мероприятиями, сравниваются две первые N рекомендаций:
+ * <ul>
+ *     <li>по предсказанной оценке — как сейчас отвечает RecommendationServiceImpl;</li>
+ *     <li>по сходству — как сервис ранжировал до RatingPredictor: наибольшее сходство кандидата
+ *     с недавними мероприятиями пользователя.</li>
+ * </ul>
+ * Попадание — рекомендованное мероприятие, с которым пользователь затем взаимодействовал.
+ * <p>
+ * Запуск на синтетическом потоке {@link Workload} с параметрами по умолчанию или на таблице user_actions analyzer:
+ * <pre>
+ *     java -cp stats/benchmarks/target/benchmarks.jar ru.practicum.benchmark.RecommendationReplay
+ *     java -cp stats/benchmarks/target/benchmarks.jar ru.practicum.benchmark.RecommendationReplay \
+ *         'jdbc:postgresql://localhost:5435/analyzer-db?user=analyzer&amp;password=analyzer'
+ * </pre>
+ */
+public final class RecommendationReplay {
+    static final double HOLDOUT_SHARE = 0.2;
+    static final int MAX_RESULTS = 10;
+
+    static final String SELECT_ACTIONS_SQL = """
+            SELECT user_id, event_id, action_type, created
+            FROM user_actions
+            ORDER BY created, id
+            """;
+
+    private RecommendationReplay() {
+    }
+
+    public static void main(String[] args) {
+        // Сервис пишет в лог каждый запрос рекомендаций
+        ((Logger) LoggerFactory.getLogger(RecommendationServiceImpl.class)).setLevel(Level.WARN);
+        UserActionAvro[] actions = args.length > 0 ? loadActions(args[0]) : defaultWorkload();
+        System.out.println("Действий: " + actions.length + ", отложено: " + HOLDOUT_SHARE
+                + ", рекомендаций на пользователя: " + MAX_RESULTS);
+        System.out.println(replay(actions, HOLDOUT_SHARE, MAX_RESULTS));
+    }
+
+    /**
+     * Строит состояние по первой доле 1 - holdoutShare действий и сравнивает обе выдачи на оставшихся.
+     */
+    static Report replay(UserActionAvro[] actions, double holdoutShare, int maxResults) {
+        int split = (int) (actions.length * (1 - holdoutShare));
+        AnalyzerModel model = AnalyzerModel.build(actions, split);
+        // Упорядочено по ID пользователя: результат не зависит от порядка обхода HashMap
+        Map<Long, Set<Long>> futureEvents = new TreeMap<>();
+        for (int i = split; i < actions.length; i++) {
+            long userId = actions[i].getUserId();
+            long eventId = actions[i].getEventId();
+            if (model.recentActions.containsKey(userId) && !model.userEventsIndex.hasInteracted(userId, eventId)) {
+                futureEvents.computeIfAbsent(userId, id -> new HashSet<>()).add(eventId);
+            }
+        }
+        Report.Builder report = new Report.Builder();
+        for (Map.Entry<Long, Set<Long>> user : futureEvents.entrySet()) {
+            List<Long> predicted = eventIds(model.service.getRecommendationsForUser(user.getKey(), maxResults));
+            List<Long> bySimilarity = rankBySimilarity(model, user.getKey(), maxResults);
+            report.add(user.getValue(), predicted, bySimilarity);
+        }
+        return report.build();
+    }
+
+    /**
+     * Ранжирование до RatingPredictor: кандидаты — непросмотренные соседи недавних мероприятий пользователя
+     * с наибольшим сходством к ним, первые maxResults по убыванию сходства.
+     */
+    static List<Long> rankBySimilarity(AnalyzerModel model, long userId, int maxResults) {
+        UserEvents userEvents = model.userEventsIndex.eventsOf(userId);
+        Map<Long, Double> candidates = new HashMap<>();
+        for (UserAction action : model.recentActionsOf(userId, maxResults)) {
+            Neighbours neighbours = model.similarityIndex.neighboursOf(action.getEventId());
+            for (int i = 0; i < neighbours.size(); i++) {
+                if (!userEvents.contains(neighbours.eventId(i))) {
+                    candidates.merge(neighbours.eventId(i), neighbours.score(i), Math::max);
+                }
+            }
+        }
+        return candidates.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(maxResults)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    private static List<Long> eventIds(Collection<RecommendedEvent> recommendations) {
+        return recommendations.stream().map(RecommendedEvent::eventId).toList();
+    }
+
+    private static UserActionAvro[] defaultWorkload() {
+        Workload workload = new Workload();
+        workload.users = 10_000;
+        workload.events = 2_000;
+        workload.userSkew = 1.0;
+        workload.eventSkew = 0.8;
+        workload.actionMix = "70:20:10";
+        workload.actions = 200_000;
+        workload.seed = 42;
+        workload.generate();
+        return workload.stream();
+    }
+
+    private static UserActionAvro[] loadActions(String jdbcUrl) {
+        SingleConnectionDataSource dataSource = new SingleConnectionDataSource(jdbcUrl, true);
+        try {
+            List<UserActionAvro> actions = new JdbcTemplate(dataSource).query(SELECT_ACTIONS_SQL, (rs, rowNum) ->
+                    UserActionAvro.newBuilder()
+                            .setUserId(rs.getLong("user_id"))
+                            .setEventId(rs.getLong("event_id"))
+                            .setActionType(ActionTypeAvro.valueOf(rs.getString("action_type")))
+                            .setTimestamp(rs.getTimestamp("created").toInstant())
+                            .build());
+            return actions.toArray(new UserActionAvro[0]);
+        } finally {
+            dataSource.destroy();
+        }
+    }
+
+    /**
+     * Итог сравнения двух выдач по всем проверенным пользователям.
+     *
+     * @param users                 пользователи с отложенными взаимодействиями
+     * @param predicted             качество выдачи по предсказанной оценке
+     * @param bySimilarity          качество выдачи по сходству
+     * @param sharedRecommendations доля рекомендаций по оценке, которые есть и в выдаче по сходству
+     */
+    record Report(int users, Quality predicted, Quality bySimilarity, double sharedRecommendations) {
+
+        @Override
+        public String toString() {
+            return String.format("""
+                            Пользователей: %d
+                            По оценке:   %s
+                            По сходству: %s
+                            Общих рекомендаций: %.3f""",
+                    users, predicted, bySimilarity, sharedRecommendations);
+        }
+
+        static final class Builder {
+            final Quality.Counter predicted = new Quality.Counter();
+            final Quality.Counter bySimilarity = new Quality.Counter();
+            int users;
+            long shared;
+
+            void add(Set<Long> futureEvents, List<Long> predictedTop, List<Long> similarityTop) {
+                users++;
+                predicted.add(futureEvents, predictedTop);
+                bySimilarity.add(futureEvents, similarityTop);
+                Set<Long> similaritySet = new HashSet<>(similarityTop);
+                shared += predictedTop.stream().filter(similaritySet::contains).count();
+            }
+
+            Report build() {
+                return new Report(users, predicted.build(users), bySimilarity.build(users),
+                        predicted.recommended == 0 ? 0 : (double) shared / predicted.recommended);
+            }
+        }
+    }
+
+    /**
+     * @param precision доля рекомендаций, с которыми пользователь затем взаимодействовал
+     * @param hitRate   доля пользователей хотя бы с одним таким мероприятием в выдаче
+     */
+    record Quality(double precision, double hitRate) {
+
+        @Override
+        public String toString() {
+            return String.format("precision@N %.4f, hit rate %.4f", precision, hitRate);
+        }
+
+        static final class Counter {
+            long recommended;
+            long hits;
+            int usersWithHit;
+
+            void add(Set<Long> futureEvents, List<Long> top) {
+                long userHits = top.stream().filter(futureEvents::contains).count();
+                recommended += top.size();
+                hits += userHits;
+                if (userHits > 0) {
+                    usersWithHit++;
+                }
+            }
+
+            Quality build(int users) {
+                return new Quality(recommended == 0 ? 0 : (double) hits / recommended,
+                        users == 0 ? 0 : (double) usersWithHit / users);
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package ru.practicum.benchmark;
+
+import kafka.deserializer.UserActionDeserializer;
+import kafka.serializer.AvroSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import ru.practicum.benchmark.workload.Workload;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+
+/**
+ * Сериализация действий в Avro на стороне collector и десериализация на стороне aggregator и analyzer.
+ * Варианты *Legacy измеряют прежние реализации — новые поток, encoder и decoder на каждую запись —
+ * для сравнения по времени и по памяти на операцию.
+ */
+public class SerializationBenchmark extends StatsBenchmark {
+    static final String TOPIC = "stats.user-actions.v1";
+
+    @State(Scope.Thread)
+    public static class Codec {
+        AvroSerializer serializer;
+        UserActionDeserializer deserializer;
+        LegacyAvroSerializer legacySerializer;
+        LegacyAvroDeserializer<UserActionAvro> legacyDeserializer;
+        UserActionAvro reuse;
+        UserActionAvro[] actions;
+        byte[][] serialized;
+        int next;
+
+        @Setup
+        public void setUp(Workload workload) {
+            serializer = new AvroSerializer();
+            deserializer = new UserActionDeserializer();
+            legacySerializer = new LegacyAvroSerializer();
+            legacyDeserializer = new LegacyAvroDeserializer<>(UserActionAvro.class);
+            reuse = new UserActionAvro();
+            actions = workload.stream();
+            serialized = new byte[actions.length][];
+            for (int i = 0; i < actions.length; i++) {
+                serialized[i] = serializer.serialize(TOPIC, actions[i]);
+            }
+        }
+
+        int nextIndex() {
+            int index = next;
+            next = next + 1 == actions.length ? 0 : next + 1;
+            return index;
+        }
+    }
+
+    @Benchmark
+    public byte[] serialize(Codec codec) {
+        return codec.serializer.serialize(TOPIC, codec.actions[codec.nextIndex()]);
+    }
+
+    @Benchmark
+    public byte[] serializeLegacy(Codec codec) {
+        return codec.legacySerializer.serialize(codec.actions[codec.nextIndex()]);
+    }
+
+    @Benchmark
+    public UserActionAvro deserialize(Codec codec) {
+        return codec.deserializer.deserialize(TOPIC, codec.serialized[codec.nextIndex()]);
+    }
+
+    @Benchmark
+    public UserActionAvro deserializeReuse(Codec codec) {
+        return codec.deserializer.deserialize(codec.serialized[codec.nextIndex()], codec.reuse);
+    }
+
+    @Benchmark
+    public UserActionAvro deserializeLegacy(Codec codec) {
+        return codec.legacyDeserializer.deserialize(codec.serialized[codec.nextIndex()]);
+    }
+}
@@ -0,0 +1,23 @@
+package ru.practicum.benchmark;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Общие настройки бенчмарков: пропускная способность и распределение времени операции
+ * (SampleTime печатает перцентили p50–p99.99). Память на операцию добавляет GC-профайлер в {@link StatsBenchmarks}.
+ * Любую настройку можно переопределить опциями JMH в командной строке.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class StatsBenchmark {
+}
@@ -0,0 +1,39 @@
+package ru.practicum.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Точка входа benchmarks.jar. Принимает обычные опции JMH и всегда добавляет GC-профайлер,
+ * чтобы рядом с временем операции печатался объём выделенной памяти (gc.alloc.rate.norm, байт на операцию).
+ * <p>
+ * Примеры:
+ * <pre>
+ *     java -jar stats/benchmarks/target/benchmarks.jar
+ *     java -jar stats/benchmarks/target/benchmarks.jar Aggregator -p users=100000 -p eventSkew=1.2
+ *     java -jar stats/benchmarks/target/benchmarks.jar Recommendation -p actionMix=90:8:2 -p maxResults=20
+ * </pre>
+ */
+public final class StatsBenchmarks {
+    private StatsBenchmarks() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp()) {
+            commandLine.showHelp();
+            return;
+        }
+        Runner runner = new Runner(new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .build());
+        if (commandLine.shouldList()) {
+            runner.list();
+            return;
+        }
+        runner.run();
+    }
+}
@@ -0,0 +1,89 @@
+package ru.practicum.benchmark.workload;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.workload.ActionMix;
+import ru.practicum.workload.ZipfSampler;
+
+import java.time.Instant;
+import java.util.SplittableRandom;
+
+/**
+ * Синтетический поток действий пользователей, общий для всех бенчмарков.
+ * <p>
+ * Форма потока задаётся параметрами JMH и меняется из командной строки, например
+ * {@code -p users=100000 -p eventSkew=1.2 -p actionMix=90:8:2}:
+ * <ul>
+ *     <li>users, events — число пользователей и мероприятий;</li>
+ *     <li>userSkew, eventSkew — показатели Zipf для активности пользователей и популярности мероприятий;</li>
+ *     <li>actionMix — доли VIEW:REGISTER:LIKE;</li>
+ *     <li>actions — длина потока, seed — зерно генератора: при одинаковых параметрах поток одинаковый.</li>
+ * </ul>
+ * ID пользователей и мероприятий — ранги в распределении, начиная с 1: самые активные и популярные имеют малые ID.
+ * Метки времени идут подряд с шагом в 1 мс.
+ */
+@State(Scope.Benchmark)
+public class Workload {
+    static final Instant START = Instant.parse("2024-01-01T00:00:00Z");
+
+    @Param("10000")
+    public int users;
+
+    @Param("2000")
+    public int events;
+
+    @Param("1.0")
+    public double userSkew;
+
+    @Param("0.8")
+    public double eventSkew;
+
+    @Param("70:20:10")
+    public String actionMix;
+
+    @Param("200000")
+    public int actions;
+
+    @Param("42")
+    public long seed;
+
+    UserActionAvro[] stream;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        SplittableRandom random = new SplittableRandom(seed);
+        ZipfSampler userSampler = new ZipfSampler(users, userSkew);
+        ZipfSampler eventSampler = new ZipfSampler(events, eventSkew);
+        ActionMix mix = ActionMix.parse(actionMix);
+        stream = new UserActionAvro[actions];
+        for (int i = 0; i < actions; i++) {
+            stream[i] = UserActionAvro.newBuilder()
+                    .setUserId(userSampler.sample(random) + 1)
+                    .setEventId(eventSampler.sample(random) + 1)
+                    .setActionType(mix.sample(random))
+                    .setTimestamp(START.plusMillis(i))
+                    .build();
+        }
+    }
+
+    public UserActionAvro[] stream() {
+        return stream;
+    }
+
+    /**
+     * ID пользователей для запросов рекомендаций: активные пользователи запрашивают их чаще.
+     */
+    public long[] sampleUsers(int count) {
+        SplittableRandom random = new SplittableRandom(seed + 1);
+        ZipfSampler userSampler = new ZipfSampler(users, userSkew);
+        long[] result = new long[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = userSampler.sample(random) + 1;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,38 @@
+package ru.practicum.benchmark;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import ru.practicum.benchmark.workload.Workload;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecommendationReplayTest {
+    static RecommendationReplay.Report report;
+
+    @BeforeAll
+    static void replay() {
+        Workload workload = new Workload();
+        workload.users = 2_000;
+        workload.events = 500;
+        workload.userSkew = 1.0;
+        workload.eventSkew = 0.8;
+        workload.actionMix = "70:20:10";
+        workload.actions = 40_000;
+        workload.seed = 42;
+        workload.generate();
+        report = RecommendationReplay.replay(workload.stream(), 0.2, 10);
+    }
+
+    @Test
+    void predictedRankingHitsHeldOutEventsMoreOftenThanSimilarityRanking() {
+        assertTrue(report.users() > 1_000, report::toString);
+        assertTrue(report.predicted().precision() > report.bySimilarity().precision(), report::toString);
+        assertTrue(report.predicted().hitRate() > report.bySimilarity().hitRate(), report::toString);
+    }
+
+    @Test
+    void rankingsDiffer() {
+        // Выдачи совпадают не полностью, иначе сравнение ничего не проверяет
+        assertTrue(report.sharedRecommendations() > 0 && report.sharedRecommendations() < 1, report::toString);
+    }
+}
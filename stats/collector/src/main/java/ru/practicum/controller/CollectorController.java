@@ -19,6 +19,10 @@ import ru.practicum.exception.SendMessageException;
 import ru.practicum.mapper.UserActionMapper;
 import ru.practicum.producer.KafkaProducerService;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
 @GrpcService
 @RequiredArgsConstructor
 @Slf4j
@@ -34,7 +38,7 @@ public class CollectorController extends UserActionControllerGrpc.UserActionCont
         try {
             log.info("Обработка контроллером collectUserAction сообщения UserActionProto {}", request);
             UserActionAvro avro = mapper.mapToAvro(request);
-            kafkaProducer.send(avro, topic);
+            kafkaProducer.send(String.valueOf(avro.getUserId()), avro, topic);
             responseObserver.onNext(Empty.getDefaultInstance());
             responseObserver.onCompleted();
             log.debug("Успешная обработка события {}", request);
@@ -44,10 +48,77 @@ public class CollectorController extends UserActionControllerGrpc.UserActionCont
             responseObserver.onError(new StatusRuntimeException(status));
         }
     }
+
+    /**
+     * Принимает пачку действий одним клиентским потоком. Каждое действие отправляется в Kafka сразу по получении,
+     * а ответ клиенту уходит только после того, как брокер подтвердил все действия пачки.
+     * Если хотя бы одно действие не записано, клиент получает ошибку.
+     */
+    @Override
+    public StreamObserver<UserActionProto> collectUserActions(StreamObserver<Empty> responseObserver) {
+        return new BatchObserver(responseObserver);
+    }
+
     @PostConstruct
     public void init() {
         log.info("CollectorController инициализирован");
     }
 
+    private class BatchObserver implements StreamObserver<UserActionProto> {
+        final StreamObserver<Empty> responseObserver;
+        // Отправленные, но ещё не подтверждённые брокером действия; +1, пока клиент не закрыл поток
+        final AtomicInteger pending = new AtomicInteger(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final AtomicBoolean answered = new AtomicBoolean();
+        int received;
+
+        BatchObserver(StreamObserver<Empty> responseObserver) {
+            this.responseObserver = responseObserver;
+        }
 
+        @Override
+        public void onNext(UserActionProto request) {
+            received++;
+            pending.incrementAndGet();
+            try {
+                UserActionAvro avro = mapper.mapToAvro(request);
+                kafkaProducer.send(String.valueOf(avro.getUserId()), avro, topic, (metadata, e) -> {
+                    if (e != null) {
+                        failure.compareAndSet(null, e);
+                    }
+                    complete();
+                });
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+                complete();
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            // Клиент оборвал поток: отвечать некому, уже отправленные действия остаются в Kafka
+            log.warn("Поток действий прерван клиентом после {} действий: {}", received, t.getMessage());
+            answered.set(true);
+        }
+
+        @Override
+        public void onCompleted() {
+            log.debug("Получена пачка из {} действий", received);
+            complete();
+        }
+
+        private void complete() {
+            if (pending.decrementAndGet() > 0 || !answered.compareAndSet(false, true)) {
+                return;
+            }
+            Throwable e = failure.get();
+            if (e == null) {
+                responseObserver.onNext(Empty.getDefaultInstance());
+                responseObserver.onCompleted();
+            } else {
+                String errorDetails = String.format("Ошибка обработки пачки из %d действий: %s", received, e.getMessage());
+                responseObserver.onError(new StatusRuntimeException(Status.INTERNAL.withDescription(errorDetails)));
+            }
+        }
+    }
 }
@@ -25,6 +25,9 @@ public class KafkaConsumerProperties {
     String autoOffsetReset;
     String keyDeserializerClass;
     String valueDeserializerClass;
+    // read_committed: читать только записи завершённых транзакций
+    String isolationLevel;
+    Boolean enableAutoCommit;
 
     public Properties buildProperties() {
 
@@ -35,6 +38,12 @@ public class KafkaConsumerProperties {
         properties.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
         properties.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, keyDeserializerClass);
         properties.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, valueDeserializerClass);
+        if (isolationLevel != null) {
+            properties.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, isolationLevel);
+        }
+        if (enableAutoCommit != null) {
+            properties.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, enableAutoCommit);
+        }
         return properties;
     }
 
@@ -48,13 +57,17 @@ public class KafkaConsumerProperties {
         autoOffsetReset={}
         keyDeserializerClass={}
         valueDeserializerClass={}
+        isolationLevel={}
+        enableAutoCommit={}
         """,
                 bootstrapServer,
                 clientId,
                 groupId,
                 autoOffsetReset,
                 keyDeserializerClass,
-                valueDeserializerClass);
+                valueDeserializerClass,
+                isolationLevel,
+                enableAutoCommit);
 
     }
 }
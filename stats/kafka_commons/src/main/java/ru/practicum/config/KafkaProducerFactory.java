@@ -14,6 +14,9 @@ import org.springframework.context.ApplicationContextAware;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 
 @Configuration
@@ -24,6 +27,7 @@ import java.util.Properties;
 @RequiredArgsConstructor
 public class KafkaProducerFactory {
     KafkaProducer<String, SpecificRecordBase> pr;
+    TopicProducers topicProducers;
     final KafkaProducerProperties config;
 
 
@@ -35,15 +39,34 @@ public class KafkaProducerFactory {
         }
         log.info("Загруженная конфигурация {}: ", properties);
         pr = new KafkaProducer<>(properties);
+        if (config.isTransactional()) {
+            pr.initTransactions();
+            log.info("Инициализированы транзакции kafka-producer, transactionalId={}", config.getTransactionalId());
+        }
         log.info("Создан kafka-producer {}", pr);
         return pr;
     }
 
+    @Bean
+    public TopicProducers topicProducers() {
+        Map<ProducerProfile, KafkaProducer<String, SpecificRecordBase>> byProfile = new EnumMap<>(ProducerProfile.class);
+        Map<String, KafkaProducer<String, SpecificRecordBase>> byTopic = new HashMap<>();
+        config.getTopicProfiles().forEach((topic, profile) -> {
+            byTopic.put(topic, byProfile.computeIfAbsent(profile, p -> new KafkaProducer<>(config.buildProperties(p))));
+            log.info("Топик {}: отдельный kafka-producer с профилем {}", topic, profile);
+        });
+        topicProducers = new TopicProducers(byTopic);
+        return topicProducers;
+    }
+
     @PreDestroy
     public void closeProducer() {
         if (pr != null) {
             pr.close();
             log.info("Kafka producer закрыт ");
         }
+        if (topicProducers != null) {
+            topicProducers.all().forEach(KafkaProducer::close);
+        }
     }
 }
@@ -10,6 +10,8 @@ import org.apache.kafka.clients.producer.ProducerConfig;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 
 @Configuration
@@ -22,22 +24,71 @@ public class KafkaProducerProperties {
     String bootstrapServer;
     String keySerializeClass;
     String valueSerializeClass;
-
+    // Если задан, producer работает в транзакционном режиме (exactly-once для consume-process-produce)
+    String transactionalId;
+    // Набор настроек под нагрузку; без профиля действуют настройки Kafka по умолчанию
+    ProducerProfile profile;
+    // Переопределения отдельных параметров профиля основного producer'а
+    Integer lingerMs;
+    Integer batchSize;
+    String compressionType;
+    String acks;
+    Boolean enableIdempotence;
+    Long bufferMemory;
+    // Топики, записи в которые отправляет отдельный producer со своим профилем
+    Map<String, ProducerProfile> topicProfiles = new HashMap<>();
 
     public Properties buildProperties() {
+        Properties properties = baseProperties(profile);
+        putIfSet(properties, ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        putIfSet(properties, ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+        putIfSet(properties, ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+        putIfSet(properties, ProducerConfig.ACKS_CONFIG, acks);
+        putIfSet(properties, ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, enableIdempotence);
+        putIfSet(properties, ProducerConfig.BUFFER_MEMORY_CONFIG, bufferMemory);
+        if (isTransactional()) {
+            properties.put(ProducerConfig.TRANSACTIONAL_ID_CONFIG, transactionalId);
+            properties.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+            properties.put(ProducerConfig.ACKS_CONFIG, "all");
+        }
+        return properties;
+    }
+
+    /**
+     * Настройки producer'а для топиков из topicProfiles: только профиль, без переопределений и транзакций.
+     */
+    public Properties buildProperties(ProducerProfile topicProfile) {
+        return baseProperties(topicProfile);
+    }
 
+    private Properties baseProperties(ProducerProfile producerProfile) {
         Properties properties = new Properties();
         properties.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServer);
         properties.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, keySerializeClass);
         properties.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, valueSerializeClass);
+        if (producerProfile != null) {
+            producerProfile.apply(properties);
+        }
+        return properties;
+    }
 
+    private static void putIfSet(Properties properties, String key, Object value) {
+        if (value != null) {
+            properties.put(key, value);
+        }
+    }
 
-        return properties;
+    public boolean isTransactional() {
+        return transactionalId != null && !transactionalId.isBlank();
     }
 
     @PostConstruct
     public void init() {
-        log.info("Loaded Kafka producer config: bootstrap={}, keySerializer={}, valueSerializer={}",
-                bootstrapServer, keySerializeClass, valueSerializeClass);
+        log.info("Loaded Kafka producer config: bootstrap={}, keySerializer={}, valueSerializer={}, transactionalId={}, profile={}, topicProfiles={}",
+                bootstrapServer, keySerializeClass, valueSerializeClass, transactionalId, profile, topicProfiles);
+        if (isTransactional() && !topicProfiles.isEmpty()) {
+            // Запись вне транзакционного producer'а не вошла бы в транзакцию
+            throw new IllegalStateException("Профили по топикам несовместимы с транзакционным producer'ом");
+        }
     }
 }
@@ -0,0 +1,57 @@
+package ru.practicum.config;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+
+import java.util.Properties;
+
+/**
+ * Готовые наборы настроек producer'а под характер нагрузки.
+ * Отдельные параметры профиля можно переопределить в {@link KafkaProducerProperties}.
+ */
+public enum ProducerProfile {
+    /**
+     * Большой поток мелких записей, допускающий потерю при смене лидера партиции:
+     * крупные пачки с задержкой на накопление и сжатием, подтверждение только от лидера.
+     */
+    THROUGHPUT {
+        @Override
+        public void apply(Properties properties) {
+            properties.put(ProducerConfig.LINGER_MS_CONFIG, 20);
+            properties.put(ProducerConfig.BATCH_SIZE_CONFIG, 128 * 1024);
+            properties.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4");
+            properties.put(ProducerConfig.ACKS_CONFIG, "1");
+            properties.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, false);
+            properties.put(ProducerConfig.BUFFER_MEMORY_CONFIG, 64L * 1024 * 1024);
+        }
+    },
+    /**
+     * Минимальная задержка каждой записи: отправка без накопления и без сжатия.
+     */
+    LATENCY {
+        @Override
+        public void apply(Properties properties) {
+            properties.put(ProducerConfig.LINGER_MS_CONFIG, 0);
+            properties.put(ProducerConfig.BATCH_SIZE_CONFIG, 16 * 1024);
+            properties.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, "none");
+            properties.put(ProducerConfig.ACKS_CONFIG, "1");
+            properties.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, false);
+        }
+    },
+    /**
+     * Без потерь и дублей: подтверждение от всех реплик и идемпотентная отправка,
+     * умеренное накопление пачек со сжатием.
+     */
+    DURABLE {
+        @Override
+        public void apply(Properties properties) {
+            properties.put(ProducerConfig.LINGER_MS_CONFIG, 5);
+            properties.put(ProducerConfig.BATCH_SIZE_CONFIG, 64 * 1024);
+            properties.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, "lz4");
+            properties.put(ProducerConfig.ACKS_CONFIG, "all");
+            properties.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+            properties.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 5);
+        }
+    };
+
+    public abstract void apply(Properties properties);
+}
@@ -0,0 +1,31 @@
+package ru.practicum.config;
+
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.producer.KafkaProducer;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+
+/**
+ * Producer'ы для топиков, у которых задан собственный профиль. Топики с одинаковым профилем
+ * делят один producer.
+ */
+public class TopicProducers {
+    private final Map<String, KafkaProducer<String, SpecificRecordBase>> byTopic;
+
+    public TopicProducers(Map<String, KafkaProducer<String, SpecificRecordBase>> byTopic) {
+        this.byTopic = Map.copyOf(byTopic);
+    }
+
+    /**
+     * @return producer топика или null, если для топика отдельный профиль не задан
+     */
+    public KafkaProducer<String, SpecificRecordBase> get(String topic) {
+        return byTopic.get(topic);
+    }
+
+    public Collection<KafkaProducer<String, SpecificRecordBase>> all() {
+        return new HashSet<>(byTopic.values());
+    }
+}
@@ -6,13 +6,20 @@ import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.consumer.ConsumerGroupMetadata;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
 import org.springframework.stereotype.Service;
+import ru.practicum.config.KafkaProducerProperties;
+import ru.practicum.config.TopicProducers;
 import ru.practicum.exception.SendMessageException;
 
-import java.util.concurrent.TimeUnit;
+import java.time.Duration;
+import java.util.Map;
 
 @Slf4j
 @Service
@@ -20,16 +27,32 @@ import java.util.concurrent.TimeUnit;
 @FieldDefaults(level = AccessLevel.PRIVATE)
 public class KafkaProducerService {
     final KafkaProducer<String, SpecificRecordBase> kafkaProducer;
+    final KafkaProducerProperties config;
+    final TopicProducers topicProducers;
 
     public void send(SpecificRecordBase data, String topic) {
-        try {
+        send(null, data, topic);
+    }
 
-            kafkaProducer.send(new ProducerRecord<>(topic, data),
+    // Ключ определяет партицию: записи с одним ключом попадают в одну партицию и читаются по порядку
+    public void send(String key, SpecificRecordBase data, String topic) {
+        send(key, data, topic, null);
+    }
+
+    /**
+     * Отправляет запись и вызывает callback, когда брокер подтвердил её или отправка не удалась.
+     * Callback выполняется в потоке ввода-вывода producer'а и не должен блокироваться.
+     */
+    public void send(String key, SpecificRecordBase data, String topic, Callback callback) {
+        try {
+            // Успешные отправки не логируются: это горячий путь, запись на каждое сообщение стоит дороже самой отправки
+            producerFor(topic).send(new ProducerRecord<>(topic, key, data),
                     (metadata, e) -> {
                         if (e != null) {
                             log.error("[{}] Ошибка отправки: {}", topic, e.getMessage());
-                        } else {
-                            log.info("Kafka: отправлено cобытие {}  в топик {} - {}",data, topic, metadata.partition());
+                        }
+                        if (callback != null) {
+                            callback.onCompletion(metadata, e);
                         }
                     });
 
@@ -39,11 +62,52 @@ public class KafkaProducerService {
 
         }
     }
+    private KafkaProducer<String, SpecificRecordBase> producerFor(String topic) {
+        KafkaProducer<String, SpecificRecordBase> topicProducer = topicProducers.get(topic);
+        return topicProducer != null ? topicProducer : kafkaProducer;
+    }
+
+    public boolean isTransactional() {
+        return config.isTransactional();
+    }
+
+    public void beginTransaction() {
+        kafkaProducer.beginTransaction();
+    }
+
+    /**
+     * Фиксирует транзакцию вместе со смещениями consumer'а: выходные записи и прогресс чтения
+     * становятся видимыми атомарно. Отдельный flush не нужен, commitTransaction дожидается отправки сам.
+     */
+    public void commitTransaction(Map<TopicPartition, OffsetAndMetadata> offsets, ConsumerGroupMetadata groupMetadata) {
+        kafkaProducer.sendOffsetsToTransaction(offsets, groupMetadata);
+        kafkaProducer.commitTransaction();
+    }
+
+    public void abortTransaction() {
+        try {
+            kafkaProducer.abortTransaction();
+        } catch (KafkaException e) {
+            log.error("Ошибка при отмене транзакции", e);
+        }
+    }
+
     public void flush() {
         try {
             kafkaProducer.flush();
+            topicProducers.all().forEach(KafkaProducer::flush);
         } catch (Exception e) {
             log.error("Ошибка при завершении отправки сообщений", e);
         }
     }
+
+    /**
+     * Закрывает producer'ы, не дожидаясь отправки буфера. Нужен, когда producer уже не может работать,
+     * например, после того как его транзакции вытеснил другой экземпляр.
+     */
+    public void close() {
+        kafkaProducer.close(Duration.ZERO);
+        topicProducers.all().forEach(producer -> producer.close(Duration.ZERO));
+        log.info("Kafka producer закрыт без отправки буфера");
+    }
 }
@@ -0,0 +1,121 @@
+package ru.practicum.load;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.aggregator.AggregationProcessor;
+import ru.practicum.aggregator.EventSimilarityCalculator;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.load.report.ConvergenceMonitor;
+import ru.practicum.load.report.ExpectedSimilarities;
+import ru.practicum.load.sink.ActionSink;
+import ru.practicum.load.sink.InProcessAggregatorSink;
+import ru.practicum.load.sink.KafkaActionSink;
+import ru.practicum.load.workload.ActionSource;
+import ru.practicum.load.workload.RatePlan;
+import ru.practicum.load.workload.ReplayActionSource;
+import ru.practicum.load.workload.SyntheticActionSource;
+import ru.practicum.workload.ActionMix;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Генератор нагрузки на конвейер рекомендаций: создаёт или воспроизводит поток действий пользователей
+ * с заданным темпом и подаёт его в Kafka или прямо в расчёт сходства.
+ * В режиме kafka с параметром --jdbc-url дополнительно измеряет, через сколько после отправки последнего действия
+ * таблица event_similarities analyzer приходит к значениям, рассчитанным по этой нагрузке.
+ */
+@Slf4j
+public final class LoadGeneratorApp {
+    private LoadGeneratorApp() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options = LoadOptions.parse(args);
+        if (options.isHelp()) {
+            System.out.println(LoadOptions.USAGE);
+            return;
+        }
+        ExpectedSimilarities expected = options.getMode() == LoadOptions.Mode.KAFKA && options.getJdbcUrl() != null
+                ? new ExpectedSimilarities(createProcessor(options))
+                : null;
+        try (ActionSource source = createSource(options); ActionSink sink = createSink(options)) {
+            run(options, source, sink, expected);
+        }
+    }
+
+    private static void run(LoadOptions options, ActionSource source, ActionSink sink, ExpectedSimilarities expected)
+            throws Exception {
+        RatePlan plan = new RatePlan(options.getRate(), options.getBurstEveryMs(), options.getBurstDurationMs(),
+                options.getBurstFactor());
+        long reportIntervalNanos = TimeUnit.MILLISECONDS.toNanos(options.getReportIntervalMs());
+        long sent = 0;
+        long maxScheduleLag = 0;
+        long sentAtLastReport = 0;
+        plan.start();
+        long started = System.nanoTime();
+        long lastReport = started;
+        while (true) {
+            maxScheduleLag = Math.max(maxScheduleLag, plan.awaitNext());
+            UserActionAvro action = source.next();
+            if (action == null) {
+                break;
+            }
+            sink.send(action);
+            if (expected != null) {
+                expected.add(action);
+            }
+            sent++;
+            long now = System.nanoTime();
+            if (now - lastReport >= reportIntervalNanos) {
+                log.info("Отправлено {}, темп {} действий/с, отставание от расписания до {} мс", sent,
+                        perSecond(sent - sentAtLastReport, now - lastReport), TimeUnit.NANOSECONDS.toMillis(maxScheduleLag));
+                lastReport = now;
+                sentAtLastReport = sent;
+            }
+        }
+        sink.finish();
+        long finished = System.nanoTime();
+
+        log.info("Итого отправлено {} действий за {} мс, средний темп {} действий/с (цель {}), "
+                        + "наибольшее отставание от расписания {} мс",
+                sent, TimeUnit.NANOSECONDS.toMillis(finished - started), perSecond(sent, finished - started),
+                options.getRate() == 0 ? "без ограничения" : Math.round(options.getRate()), TimeUnit.NANOSECONDS.toMillis(maxScheduleLag));
+        log.info(sink.summary());
+
+        if (expected != null) {
+            ConvergenceMonitor monitor = new ConvergenceMonitor(options.getJdbcUrl(), options.getJdbcUser(),
+                    options.getJdbcPassword(), options.getPollIntervalMs(), options.getTolerance());
+            long lagMs = monitor.await(expected, finished, options.getConvergenceTimeoutMs());
+            if (lagMs < 0) {
+                log.warn("event_similarities не сошлась за {} мс", options.getConvergenceTimeoutMs());
+            } else {
+                log.info("event_similarities сошлась через {} мс после подтверждения последнего действия", lagMs);
+            }
+        }
+    }
+
+    private static ActionSource createSource(LoadOptions options) {
+        if (options.getReplayFile() != null) {
+            return new ReplayActionSource(options.getReplayFile());
+        }
+        return new SyntheticActionSource(options.getUsers(), options.getEvents(), options.getUserSkew(),
+                options.getEventSkew(), ActionMix.parse(options.getActionMix()), options.getActions(), options.getSeed());
+    }
+
+    private static ActionSink createSink(LoadOptions options) {
+        return switch (options.getMode()) {
+            case IN_PROCESS -> new InProcessAggregatorSink(createProcessor(options));
+            case KAFKA -> new KafkaActionSink(options.getBootstrapServers(), options.getTopic(),
+                    options.getProducerProfile());
+        };
+    }
+
+    // Тот же расчёт, что в aggregator с такими же окном и затуханием
+    private static AggregationProcessor createProcessor(LoadOptions options) {
+        return new AggregationProcessor(new EventSimilarityCalculator(options.decayProperties(),
+                options.fanoutProperties()));
+    }
+
+    private static long perSecond(long count, long nanos) {
+        return nanos == 0 ? 0 : count * TimeUnit.SECONDS.toNanos(1) / nanos;
+    }
+}
@@ -0,0 +1,149 @@
+package ru.practicum.load;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.experimental.FieldDefaults;
+import ru.practicum.aggregator.DecayProperties;
+import ru.practicum.aggregator.FanoutProperties;
+import ru.practicum.config.ProducerProfile;
+
+import java.nio.file.Path;
+
+/**
+ * Параметры запуска в виде {@code --имя=значение}.
+ */
+@Getter
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class LoadOptions {
+    static final String USAGE = """
+            java -jar load-generator.jar [--имя=значение ...]
+
+            Куда подаётся нагрузка:
+              --mode=in-process|kafka          in-process — прямо в AggregationProcessor (по умолчанию), kafka — в топик
+              --bootstrap-servers=localhost:9092
+              --topic=stats.user-actions.v1
+              --producer-profile=THROUGHPUT    THROUGHPUT, LATENCY или DURABLE
+
+            Откуда берутся действия:
+              --replay-file=путь               CSV userId,eventId,actionType[,timestampMillis]; без него — генерация
+              --actions=1000000 --users=10000 --events=2000
+              --user-skew=1.0 --event-skew=0.8 показатели Zipf активности пользователей и популярности мероприятий
+              --action-mix=70:20:10            доли VIEW:REGISTER:LIKE
+              --seed=42
+
+            Темп:
+              --rate=5000                      действий в секунду, 0 — без ограничения
+              --burst-every-ms=0 --burst-duration-ms=0 --burst-factor=1
+                                               каждые burst-every-ms последние burst-duration-ms идут в burst-factor раз быстрее
+              --report-interval-ms=5000
+
+            Расчёт сходства (in-process и ожидаемые значения), должен совпадать с настройками aggregator:
+              --max-user-events=0              aggregator.fanout.max-user-events, 0 — вся история пользователя
+              --decay-half-life-ms=0           aggregator.decay.half-life-ms, 0 — без затухания
+              --decay-eviction-threshold=0.01 --decay-sweep-interval-ms=60000
+
+            Схождение event_similarities (только kafka, на чистом окружении):
+              --jdbc-url=jdbc:postgresql://localhost:5435/analyzer-db --jdbc-user=analyzer --jdbc-password=analyzer
+              --convergence-timeout-ms=300000 --poll-interval-ms=1000 --tolerance=1e-6
+            """;
+
+    Mode mode = Mode.IN_PROCESS;
+    String bootstrapServers = "localhost:9092";
+    String topic = "stats.user-actions.v1";
+    ProducerProfile producerProfile = ProducerProfile.THROUGHPUT;
+    Path replayFile;
+    long actions = 1_000_000;
+    int users = 10_000;
+    int events = 2_000;
+    double userSkew = 1.0;
+    double eventSkew = 0.8;
+    String actionMix = "70:20:10";
+    long seed = 42;
+    double rate = 5_000;
+    long burstEveryMs;
+    long burstDurationMs;
+    double burstFactor = 1;
+    long reportIntervalMs = 5_000;
+    int maxUserEvents;
+    long decayHalfLifeMs;
+    double decayEvictionThreshold = 0.01;
+    long decaySweepIntervalMs = 60_000;
+    String jdbcUrl;
+    String jdbcUser;
+    String jdbcPassword;
+    long convergenceTimeoutMs = 300_000;
+    long pollIntervalMs = 1_000;
+    double tolerance = 1e-6;
+    boolean help;
+
+    public enum Mode {
+        IN_PROCESS,
+        KAFKA
+    }
+
+    public FanoutProperties fanoutProperties() {
+        FanoutProperties fanout = new FanoutProperties();
+        fanout.setMaxUserEvents(maxUserEvents);
+        return fanout;
+    }
+
+    public DecayProperties decayProperties() {
+        DecayProperties decay = new DecayProperties();
+        decay.setEnabled(decayHalfLifeMs > 0);
+        if (decayHalfLifeMs > 0) {
+            decay.setHalfLifeMs(decayHalfLifeMs);
+        }
+        decay.setEvictionThreshold(decayEvictionThreshold);
+        decay.setSweepIntervalMs(decaySweepIntervalMs);
+        return decay;
+    }
+
+    public static LoadOptions parse(String[] args) {
+        LoadOptions options = new LoadOptions();
+        for (String arg : args) {
+            if (arg.equals("--help") || arg.equals("-h")) {
+                options.help = true;
+                continue;
+            }
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                throw new IllegalArgumentException("Ожидается --имя=значение: " + arg);
+            }
+            options.set(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        return options;
+    }
+
+    private void set(String name, String value) {
+        switch (name) {
+            case "mode" -> mode = Mode.valueOf(value.toUpperCase().replace('-', '_'));
+            case "bootstrap-servers" -> bootstrapServers = value;
+            case "topic" -> topic = value;
+            case "producer-profile" -> producerProfile = ProducerProfile.valueOf(value.toUpperCase());
+            case "replay-file" -> replayFile = Path.of(value);
+            case "actions" -> actions = Long.parseLong(value);
+            case "users" -> users = Integer.parseInt(value);
+            case "events" -> events = Integer.parseInt(value);
+            case "user-skew" -> userSkew = Double.parseDouble(value);
+            case "event-skew" -> eventSkew = Double.parseDouble(value);
+            case "action-mix" -> actionMix = value;
+            case "seed" -> seed = Long.parseLong(value);
+            case "rate" -> rate = Double.parseDouble(value);
+            case "burst-every-ms" -> burstEveryMs = Long.parseLong(value);
+            case "burst-duration-ms" -> burstDurationMs = Long.parseLong(value);
+            case "burst-factor" -> burstFactor = Double.parseDouble(value);
+            case "report-interval-ms" -> reportIntervalMs = Long.parseLong(value);
+            case "max-user-events" -> maxUserEvents = Integer.parseInt(value);
+            case "decay-half-life-ms" -> decayHalfLifeMs = Long.parseLong(value);
+            case "decay-eviction-threshold" -> decayEvictionThreshold = Double.parseDouble(value);
+            case "decay-sweep-interval-ms" -> decaySweepIntervalMs = Long.parseLong(value);
+            case "jdbc-url" -> jdbcUrl = value;
+            case "jdbc-user" -> jdbcUser = value;
+            case "jdbc-password" -> jdbcPassword = value;
+            case "convergence-timeout-ms" -> convergenceTimeoutMs = Long.parseLong(value);
+            case "poll-interval-ms" -> pollIntervalMs = Long.parseLong(value);
+            case "tolerance" -> tolerance = Double.parseDouble(value);
+            default -> throw new IllegalArgumentException("Неизвестный параметр --" + name);
+        }
+    }
+}
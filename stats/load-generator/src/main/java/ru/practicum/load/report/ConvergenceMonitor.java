@@ -0,0 +1,76 @@
+package ru.practicum.load.report;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Опрашивает таблицу event_similarities analyzer, пока все ожидаемые пары не получат ожидаемое значение.
+ * Сравнение осмысленно только на чистом окружении: если aggregator или analyzer уже видели другие действия,
+ * их значения сходства отличаются от рассчитанных по одной этой нагрузке.
+ */
+@Slf4j
+public class ConvergenceMonitor {
+    static final String SELECT_SIMILARITIES = "SELECT event_id_a, event_id_b, similarity_score FROM event_similarities";
+
+    private final String jdbcUrl;
+    private final String user;
+    private final String password;
+    private final long pollIntervalMs;
+    private final double tolerance;
+
+    public ConvergenceMonitor(String jdbcUrl, String user, String password, long pollIntervalMs, double tolerance) {
+        this.jdbcUrl = jdbcUrl;
+        this.user = user;
+        this.password = password;
+        this.pollIntervalMs = pollIntervalMs;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Ждёт схождения таблицы с ожидаемыми значениями.
+     *
+     * @param sentAtNanos момент, когда брокер подтвердил последнее действие нагрузки
+     * @return задержка схождения от sentAtNanos в миллисекундах или -1, если таблица не сошлась за timeoutMs
+     */
+    public long await(ExpectedSimilarities expected, long sentAtNanos, long timeoutMs) throws SQLException {
+        long deadline = sentAtNanos + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        try (Connection connection = DriverManager.getConnection(jdbcUrl, user, password);
+             PreparedStatement statement = connection.prepareStatement(SELECT_SIMILARITIES)) {
+            while (true) {
+                int matched = countMatched(statement, expected);
+                long now = System.nanoTime();
+                log.info("event_similarities: совпало {} из {} пар", matched, expected.size());
+                if (matched == expected.size()) {
+                    return TimeUnit.NANOSECONDS.toMillis(now - sentAtNanos);
+                }
+                if (now >= deadline) {
+                    return -1;
+                }
+                try {
+                    Thread.sleep(pollIntervalMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return -1;
+                }
+            }
+        }
+    }
+
+    private int countMatched(PreparedStatement statement, ExpectedSimilarities expected) throws SQLException {
+        int matched = 0;
+        try (ResultSet rows = statement.executeQuery()) {
+            while (rows.next()) {
+                if (expected.matches(rows.getLong(1), rows.getLong(2), rows.getDouble(3), tolerance)) {
+                    matched++;
+                }
+            }
+        }
+        return matched;
+    }
+}
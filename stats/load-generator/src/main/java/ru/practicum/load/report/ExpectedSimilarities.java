@@ -0,0 +1,57 @@
+package ru.practicum.load.report;
+
+import ru.practicum.aggregator.AggregationProcessor;
+import ru.practicum.aggregator.state.LongDoubleHashMap;
+import ru.practicum.ewm.stats.avro.EventSimilarityAvro;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+
+import java.util.List;
+
+/**
+ * Итоговые значения сходства, к которым должна прийти таблица event_similarities после обработки нагрузки.
+ * Считаются тем же калькулятором, что и в aggregator, по тем же действиям; для каждой пары хранится последнее значение.
+ * Пары с нулевым последним значением analyzer удаляет, поэтому здесь они тоже не хранятся.
+ * <p>
+ * Окно мероприятий и затухание должны быть настроены так же, как в aggregator. Вытеснение затухших весов идёт
+ * по расписанию, а не по действиям, поэтому с затуханием значения совпадут точно, только если за время нагрузки
+ * ни один вес не затух ниже порога вытеснения.
+ */
+public class ExpectedSimilarities {
+    private final AggregationProcessor processor;
+    private final LongDoubleHashMap scores = new LongDoubleHashMap();
+
+    public ExpectedSimilarities(AggregationProcessor processor) {
+        this.processor = processor;
+    }
+
+    public void add(UserActionAvro action) {
+        update(processor.process(action));
+        if (processor.isSweepDue()) {
+            update(processor.evictCold());
+        }
+    }
+
+    public int size() {
+        return scores.size();
+    }
+
+    public boolean matches(long eventA, long eventB, double score, double tolerance) {
+        double expected = scores.get(pairKey(Math.min(eventA, eventB), Math.max(eventA, eventB)), Double.NaN);
+        return Math.abs(expected - score) <= tolerance;
+    }
+
+    private void update(List<EventSimilarityAvro> similarities) {
+        for (EventSimilarityAvro similarity : similarities) {
+            long key = pairKey(similarity.getEventA(), similarity.getEventB());
+            if (similarity.getScore() == 0) {
+                scores.remove(key);
+            } else {
+                scores.put(key, similarity.getScore());
+            }
+        }
+    }
+
+    private static long pairKey(long first, long second) {
+        return first << 32 | second;
+    }
+}
@@ -0,0 +1,43 @@
+package ru.practicum.load.report;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Накапливает замеры времени и считает по ним перцентили.
+ * Запись синхронизирована: подтверждения Kafka приходят из потока ввода-вывода producer'а.
+ */
+public class Latencies {
+    private long[] values = new long[1024];
+    private int size;
+
+    public synchronized void record(long nanos) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = nanos;
+    }
+
+    public synchronized int count() {
+        return size;
+    }
+
+    /**
+     * @return строка вида «p50=… p90=… p99=… p99.9=… max=…» в микросекундах или «нет данных»
+     */
+    public synchronized String summary() {
+        if (size == 0) {
+            return "нет данных";
+        }
+        long[] sorted = Arrays.copyOf(values, size);
+        Arrays.sort(sorted);
+        return String.format("p50=%d p90=%d p99=%d p99.9=%d max=%d мкс",
+                micros(sorted, 0.5), micros(sorted, 0.9), micros(sorted, 0.99), micros(sorted, 0.999),
+                TimeUnit.NANOSECONDS.toMicros(sorted[size - 1]));
+    }
+
+    private static long micros(long[] sorted, double percentile) {
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return TimeUnit.NANOSECONDS.toMicros(sorted[Math.max(0, index)]);
+    }
+}
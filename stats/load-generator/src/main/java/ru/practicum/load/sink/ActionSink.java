@@ -0,0 +1,23 @@
+package ru.practicum.load.sink;
+
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+
+/**
+ * Получатель сгенерированной нагрузки.
+ */
+public interface ActionSink extends AutoCloseable {
+    void send(UserActionAvro action);
+
+    /**
+     * Дожидается обработки всех отправленных действий.
+     */
+    void finish();
+
+    /**
+     * @return строки итогового отчёта, специфичные для получателя
+     */
+    String summary();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,42 @@
+package ru.practicum.load.sink;
+
+import ru.practicum.aggregator.AggregationProcessor;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.load.report.Latencies;
+
+/**
+ * Подаёт действия прямо в {@link AggregationProcessor} в этом же процессе, без Kafka и сервисов.
+ * Показывает предел пропускной способности расчёта сходства и время обработки одного действия.
+ */
+public class InProcessAggregatorSink implements ActionSink {
+    private final AggregationProcessor processor;
+    private final Latencies latencies = new Latencies();
+    private long similarities;
+
+    public InProcessAggregatorSink(AggregationProcessor processor) {
+        this.processor = processor;
+    }
+
+    @Override
+    public void send(UserActionAvro action) {
+        long started = System.nanoTime();
+        similarities += processor.process(action).size();
+        if (processor.isSweepDue()) {
+            similarities += processor.evictCold().size();
+        }
+        latencies.record(System.nanoTime() - started);
+    }
+
+    @Override
+    public void finish() {
+    }
+
+    @Override
+    public String summary() {
+        return "Обработка действия: " + latencies.summary() + ", рассчитано значений сходства: " + similarities;
+    }
+
+    @Override
+    public void close() {
+    }
+}
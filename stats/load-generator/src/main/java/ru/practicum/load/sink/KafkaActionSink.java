@@ -0,0 +1,65 @@
+package ru.practicum.load.sink;
+
+import kafka.serializer.AvroSerializer;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.StringSerializer;
+import ru.practicum.config.ProducerProfile;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.load.report.Latencies;
+
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Пишет действия в топик так же, как collector: {@link AvroSerializer}, ключ — ID пользователя.
+ * Время от отправки до подтверждения брокером попадает в отчёт.
+ */
+public class KafkaActionSink implements ActionSink {
+    private final KafkaProducer<String, SpecificRecordBase> producer;
+    private final String topic;
+    private final Latencies ackLatencies = new Latencies();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile Exception lastError;
+
+    public KafkaActionSink(String bootstrapServers, String topic, ProducerProfile profile) {
+        Properties properties = new Properties();
+        properties.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        properties.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        properties.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, AvroSerializer.class);
+        profile.apply(properties);
+        this.producer = new KafkaProducer<>(properties);
+        this.topic = topic;
+    }
+
+    @Override
+    public void send(UserActionAvro action) {
+        long started = System.nanoTime();
+        producer.send(new ProducerRecord<>(topic, String.valueOf(action.getUserId()), action), (metadata, e) -> {
+            if (e != null) {
+                failed.incrementAndGet();
+                lastError = e;
+            } else {
+                ackLatencies.record(System.nanoTime() - started);
+            }
+        });
+    }
+
+    @Override
+    public void finish() {
+        producer.flush();
+    }
+
+    @Override
+    public String summary() {
+        String summary = "Подтверждение брокером: " + ackLatencies.summary() + ", ошибок отправки: " + failed.get();
+        return lastError == null ? summary : summary + " (последняя: " + lastError.getMessage() + ")";
+    }
+
+    @Override
+    public void close() {
+        producer.close();
+    }
+}
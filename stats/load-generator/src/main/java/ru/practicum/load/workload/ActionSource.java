@@ -0,0 +1,17 @@
+package ru.practicum.load.workload;
+
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+
+/**
+ * Источник действий пользователей для нагрузки.
+ */
+public interface ActionSource extends AutoCloseable {
+    /**
+     * @return следующее действие или null, если поток закончился
+     */
+    UserActionAvro next();
+
+    @Override
+    default void close() {
+    }
+}
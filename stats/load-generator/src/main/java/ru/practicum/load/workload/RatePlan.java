@@ -0,0 +1,65 @@
+package ru.practicum.load.workload;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Задаёт темп отправки: базовый поток действий в секунду и периодические всплески.
+ * Каждые burstEveryMs в течение burstDurationMs темп умножается на burstFactor.
+ * Нулевой темп означает отправку без ограничений.
+ * <p>
+ * Расписание считается от старта, а не от предыдущей отправки: если отправитель отстал,
+ * он догоняет без пауз, и отставание от расписания видно в отчёте.
+ */
+public class RatePlan {
+    private final double ratePerSecond;
+    private final long burstEveryNanos;
+    private final long burstDurationNanos;
+    private final double burstFactor;
+    private long startNanos;
+    private long nextNanos;
+
+    public RatePlan(double ratePerSecond, long burstEveryMs, long burstDurationMs, double burstFactor) {
+        if (ratePerSecond < 0 || burstFactor <= 0 || burstEveryMs < 0 || burstDurationMs < 0) {
+            throw new IllegalArgumentException("Темп, длительности всплесков и множитель не могут быть отрицательными");
+        }
+        if (burstEveryMs > 0 && burstDurationMs > burstEveryMs) {
+            throw new IllegalArgumentException("Всплеск не может быть длиннее периода между всплесками");
+        }
+        this.ratePerSecond = ratePerSecond;
+        this.burstEveryNanos = TimeUnit.MILLISECONDS.toNanos(burstEveryMs);
+        this.burstDurationNanos = TimeUnit.MILLISECONDS.toNanos(burstDurationMs);
+        this.burstFactor = burstFactor;
+    }
+
+    public void start() {
+        startNanos = System.nanoTime();
+        nextNanos = startNanos;
+    }
+
+    /**
+     * Ждёт момента следующей отправки по расписанию.
+     *
+     * @return отставание от расписания в наносекундах, 0 — если отправка идёт вовремя
+     */
+    public long awaitNext() {
+        if (ratePerSecond == 0) {
+            return 0;
+        }
+        long scheduled = nextNanos;
+        nextNanos += (long) (TimeUnit.SECONDS.toNanos(1) / rateAt(scheduled - startNanos));
+        long now = System.nanoTime();
+        while (now < scheduled) {
+            LockSupport.parkNanos(scheduled - now);
+            now = System.nanoTime();
+        }
+        return now - scheduled;
+    }
+
+    private double rateAt(long elapsedNanos) {
+        if (burstEveryNanos > 0 && elapsedNanos % burstEveryNanos >= burstEveryNanos - burstDurationNanos) {
+            return ratePerSecond * burstFactor;
+        }
+        return ratePerSecond;
+    }
+}
@@ -0,0 +1,77 @@
+package ru.practicum.load.workload;
+
+import ru.practicum.ewm.stats.avro.ActionTypeAvro;
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+
+/**
+ * Воспроизводит действия из CSV-файла со строками {@code userId,eventId,actionType[,timestampMillis]},
+ * например выгрузки таблицы user_actions. Пустые строки и строки, начинающиеся с #, пропускаются.
+ * Если метки времени в файле нет, подставляется момент чтения строки.
+ */
+public class ReplayActionSource implements ActionSource {
+    private final Path file;
+    private final BufferedReader reader;
+    private long line;
+
+    public ReplayActionSource(Path file) {
+        this.file = file;
+        try {
+            this.reader = Files.newBufferedReader(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось открыть файл " + file, e);
+        }
+    }
+
+    @Override
+    public UserActionAvro next() {
+        try {
+            String text;
+            do {
+                text = reader.readLine();
+                line++;
+                if (text == null) {
+                    return null;
+                }
+                text = text.strip();
+            } while (text.isEmpty() || text.startsWith("#"));
+            return parse(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка чтения файла " + file, e);
+        }
+    }
+
+    private UserActionAvro parse(String text) {
+        String[] fields = text.split(",");
+        if (fields.length < 3 || fields.length > 4) {
+            throw new IllegalArgumentException(file + ":" + line + ": ожидается userId,eventId,actionType[,timestampMillis]");
+        }
+        try {
+            return UserActionAvro.newBuilder()
+                    .setUserId(Long.parseLong(fields[0].strip()))
+                    .setEventId(Long.parseLong(fields[1].strip()))
+                    .setActionType(ActionTypeAvro.valueOf(fields[2].strip().toUpperCase()))
+                    .setTimestamp(fields.length == 4
+                            ? Instant.ofEpochMilli(Long.parseLong(fields[3].strip()))
+                            : Instant.now())
+                    .build();
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(file + ":" + line + ": некорректная строка: " + text, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package ru.practicum.load.workload;
+
+import ru.practicum.ewm.stats.avro.UserActionAvro;
+import ru.practicum.workload.ActionMix;
+import ru.practicum.workload.ZipfSampler;
+
+import java.time.Instant;
+import java.util.SplittableRandom;
+
+/**
+ * Синтетический поток действий: пользователь и мероприятие выбираются по Zipf, тип действия — по заданным долям.
+ * ID пользователей и мероприятий — ранги в распределении, начиная с 1: самые активные и популярные имеют малые ID.
+ * При одинаковых параметрах и зерне поток повторяется; метка времени — момент генерации действия.
+ */
+public class SyntheticActionSource implements ActionSource {
+    private final SplittableRandom random;
+    private final ZipfSampler userSampler;
+    private final ZipfSampler eventSampler;
+    private final ActionMix mix;
+    private final long limit;
+    private long generated;
+
+    public SyntheticActionSource(int users, int events, double userSkew, double eventSkew, ActionMix mix,
+                                 long limit, long seed) {
+        this.random = new SplittableRandom(seed);
+        this.userSampler = new ZipfSampler(users, userSkew);
+        this.eventSampler = new ZipfSampler(events, eventSkew);
+        this.mix = mix;
+        this.limit = limit;
+    }
+
+    @Override
+    public UserActionAvro next() {
+        if (generated == limit) {
+            return null;
+        }
+        generated++;
+        return UserActionAvro.newBuilder()
+                .setUserId(userSampler.sample(random) + 1)
+                .setEventId(eventSampler.sample(random) + 1)
+                .setActionType(mix.sample(random))
+                .setTimestamp(Instant.now())
+                .build();
+    }
+}
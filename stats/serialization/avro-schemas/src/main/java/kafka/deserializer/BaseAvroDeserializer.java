@@ -1,18 +1,30 @@
 package kafka.deserializer;
 
 import kafka.exception.DeSerealizationException;
-import lombok.RequiredArgsConstructor;
+import org.apache.avro.io.BinaryDecoder;
 import org.apache.avro.io.DatumReader;
-import org.apache.avro.io.Decoder;
 import org.apache.avro.io.DecoderFactory;
 import org.apache.avro.specific.SpecificDatumReader;
 import org.apache.avro.specific.SpecificRecordBase;
 import org.apache.kafka.common.serialization.Deserializer;
 
 import java.io.IOException;
+import java.io.InputStream;
 
+/**
+ * Десериализует Avro-записи заданного типа.
+ * <p>
+ * Decoder и входной поток у каждого потока свои и переиспользуются между вызовами, DatumReader потокобезопасен.
+ * Используется небуферизованный decoder: буферизованный на каждое сообщение создаёт новый источник данных.
+ * Через {@link Deserializer} всегда возвращается новая запись: consumer отдаёт пачку записей целиком,
+ * и общий экземпляр перезаписывался бы следующими сообщениями той же пачки.
+ * Переиспользовать запись можно через {@link #deserialize(byte[], SpecificRecordBase)},
+ * когда вызывающий сам владеет экземпляром и не хранит его между вызовами.
+ */
 public class BaseAvroDeserializer<T extends SpecificRecordBase> implements Deserializer<T> {
     private final DatumReader<T> reader;
+    private final DecoderFactory decoderFactory = DecoderFactory.get();
+    private final ThreadLocal<Input> inputs = ThreadLocal.withInitial(Input::new);
 
     public BaseAvroDeserializer(Class<T> targetType) {
         this.reader = new SpecificDatumReader<>(targetType);
@@ -23,11 +35,70 @@ public class BaseAvroDeserializer<T extends SpecificRecordBase> implements Deser
         if (data == null) {
             return null;
         }
+        return deserialize(data, null);
+    }
+
+    /**
+     * Читает запись в переданный экземпляр вместо создания нового.
+     *
+     * @param data  сериализованная запись
+     * @param reuse экземпляр для заполнения или null
+     * @return заполненная запись: reuse, если он передан
+     */
+    public T deserialize(byte[] data, T reuse) {
+        Input input = inputs.get();
         try {
-            Decoder decoder = DecoderFactory.get().binaryDecoder(data, null);
-            return reader.read(null, decoder);
+            input.stream.reset(data);
+            input.decoder = decoderFactory.directBinaryDecoder(input.stream, input.decoder);
+            return reader.read(reuse, input.decoder);
         } catch (IOException e) {
             throw new DeSerealizationException("Ошибка десереализации", e);
+        } finally {
+            // Не удерживаем последнее сообщение до следующего вызова
+            input.stream.reset(null);
+        }
+    }
+
+    private static class Input {
+        final ByteArraySource stream = new ByteArraySource();
+        BinaryDecoder decoder;
+    }
+
+    /**
+     * Поток над массивом байт, который можно перенацелить на следующее сообщение.
+     * В отличие от ByteArrayInputStream методы не синхронизированы: поток используется одним потоком выполнения.
+     */
+    private static class ByteArraySource extends InputStream {
+        byte[] data;
+        int position;
+
+        void reset(byte[] data) {
+            this.data = data;
+            this.position = 0;
+        }
+
+        @Override
+        public int read() {
+            return position < data.length ? data[position++] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (position >= data.length) {
+                return -1;
+            }
+            int count = Math.min(length, data.length - position);
+            System.arraycopy(data, position, target, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return data.length - position;
         }
     }
 }
@@ -13,14 +13,26 @@ import org.apache.kafka.common.serialization.Serializer;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Сериализует Avro-записи в бинарный формат.
+ * <p>
+ * Producer вызывает сериализатор из любых потоков, отправляющих сообщения, поэтому кэш DatumWriter потокобезопасен,
+ * а выходной буфер и encoder у каждого потока свои и переиспользуются между вызовами.
+ * На запись выделяется только возвращаемый массив байт.
+ */
 @Slf4j
 public class AvroSerializer implements Serializer<SpecificRecordBase> {
+    // Буфер, выросший больше этого размера на крупной записи, не сохраняется, чтобы поток не удерживал лишнюю память
+    static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+    static final int INITIAL_BUFFER_SIZE = 256;
+
     private final EncoderFactory encoderFactory = EncoderFactory.get();
     // Кэш для DatumWriter, чтобы избежать повторного создания для одной и той же схемы.
-    private final Map<Schema, DatumWriter<SpecificRecordBase>> writers = new HashMap<>();
+    private final Map<Schema, DatumWriter<SpecificRecordBase>> writers = new ConcurrentHashMap<>();
+    private final ThreadLocal<Buffers> buffers = ThreadLocal.withInitial(Buffers::new);
 
     @Override
     public byte[] serialize(String topic, SpecificRecordBase data) {
@@ -28,22 +40,44 @@ public class AvroSerializer implements Serializer<SpecificRecordBase> {
             log.error("Данные для cериализации равны null");
             throw new NullValueException("Данные для сериализации равны null");
         }
-        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-            BinaryEncoder encoder = encoderFactory.binaryEncoder(out, null);
-            Schema schema = data.getSchema();
+        Buffers local = buffers.get();
+        try {
+            ByteArrayOutputStream out = local.out;
+            out.reset();
+            BinaryEncoder encoder = encoderFactory.binaryEncoder(out, local.encoder);
+            local.encoder = encoder;
             // Используем кэшированный DatumWriter или создаем новый, если его нет в кэше.
-            DatumWriter<SpecificRecordBase> writer = writers.computeIfAbsent(
-                    schema,
-                    s -> {
-                        log.debug("Создан новый DatumWriter для схемы {}", schema);
-                        return new SpecificDatumWriter<>(s);
-                    });
-            writer.write(data, encoder);
+            writerFor(data.getSchema()).write(data, encoder);
             encoder.flush();
             log.debug("Данные успешно сериализованы для топика {}", topic);
-            return out.toByteArray();
+            byte[] result = out.toByteArray();
+            if (result.length > MAX_RETAINED_BUFFER_SIZE) {
+                local.out = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+            }
+            return result;
         } catch (IOException ex) {
+            local.encoder = null;
             throw new SerializationException("Ошибка сериализации данных для топика " + topic, ex);
+        } catch (RuntimeException ex) {
+            // В encoder могли остаться недописанные данные, следующий вызов начнёт с нового
+            local.encoder = null;
+            throw ex;
+        }
+    }
+
+    private DatumWriter<SpecificRecordBase> writerFor(Schema schema) {
+        DatumWriter<SpecificRecordBase> writer = writers.get(schema);
+        if (writer != null) {
+            return writer;
         }
+        return writers.computeIfAbsent(schema, s -> {
+            log.debug("Создан новый DatumWriter для схемы {}", s);
+            return new SpecificDatumWriter<>(s);
+        });
+    }
+
+    private static class Buffers {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+        BinaryEncoder encoder;
     }
 }
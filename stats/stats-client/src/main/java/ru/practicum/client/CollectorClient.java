@@ -1,7 +1,12 @@
 package ru.practicum.client;
 
+import com.google.protobuf.Empty;
 import com.google.protobuf.Timestamp;
+import io.grpc.stub.StreamObserver;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.client.inject.GrpcClient;
@@ -11,33 +16,178 @@ import ru.practicum.evm.stats.proto.UserActionProto;
 import ru.practicum.ewm.stats.proto.UserActionControllerGrpc;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Отправляет действия пользователей в collector.
+ * <p>
+ * В асинхронном режиме (по умолчанию) действие кладётся в ограниченный буфер и сразу возвращает управление:
+ * телеметрия не влияет ни на время ответа, ни на успех пользовательского запроса.
+ * Фоновый поток забирает действия пачками и отправляет каждую пачку одним клиентским потоком
+ * через асинхронный stub, держа не больше maxInFlight незавершённых пачек. Если collector не успевает, буфер заполняется
+ * и новые действия отбрасываются по настроенной политике.
+ */
 @Service
+@RequiredArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @Slf4j
 public class CollectorClient {
-   @GrpcClient("collector")
+    static final long DROP_LOG_EVERY = 1_000;
+
+    @GrpcClient("collector")
     UserActionControllerGrpc.UserActionControllerBlockingStub blockingStub;
 
-   public void sendUserAction(Long userId, Long eventId, ActionTypeProto actionType) {
+    @GrpcClient("collector")
+    UserActionControllerGrpc.UserActionControllerStub asyncStub;
+
+    final CollectorClientProperties properties;
+
+    UserActionBuffer buffer;
+    Semaphore inFlight;
+    Thread sender;
+    volatile boolean running;
+    final AtomicLong dropped = new AtomicLong();
+    final AtomicLong failed = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isAsync()) {
+            return;
+        }
+        buffer = new UserActionBuffer(properties.getQueueCapacity(), properties.getDropPolicy());
+        inFlight = new Semaphore(properties.getMaxInFlight());
+        running = true;
+        sender = new Thread(this::sendLoop, "collector-client-sender");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (sender == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(sender);
+        try {
+            sender.join(properties.getShutdownTimeoutMs());
+            // Дожидаемся ответов на уже отправленные пачки
+            if (!inFlight.tryAcquire(properties.getMaxInFlight(), properties.getShutdownTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                log.warn("Не дождались завершения отправки действий в collector при остановке");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!buffer.isEmpty()) {
+            log.warn("При остановке не отправлено {} действий", buffer.size());
+        }
+    }
+
+    public void sendUserAction(Long userId, Long eventId, ActionTypeProto actionType) {
+        UserActionProto proto = toProto(userId, eventId, actionType);
+        if (!properties.isAsync()) {
+            sendBlocking(proto);
+            return;
+        }
+        if (!buffer.offer(proto)) {
+            long total = dropped.incrementAndGet();
+            if (total % DROP_LOG_EVERY == 1) {
+                log.warn("Буфер действий для collector переполнен, всего отброшено {}", total);
+            }
+        }
+        if (buffer.size() >= properties.getBatchSize()) {
+            LockSupport.unpark(sender);
+        }
+    }
+
+    private void sendBlocking(UserActionProto proto) {
+        try {
+            blockingStub.collectUserAction(proto);
+        } catch (RuntimeException e) {
+            log.error("Ошибка отправки действия в collector", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void sendLoop() {
+        List<UserActionProto> batch = new ArrayList<>(properties.getBatchSize());
+        long lingerNanos = TimeUnit.MILLISECONDS.toNanos(properties.getLingerMs());
+        while (true) {
+            batch.clear();
+            if (buffer.drainTo(batch, properties.getBatchSize()) == 0) {
+                if (!running) {
+                    break;
+                }
+                LockSupport.parkNanos(lingerNanos);
+                continue;
+            }
+            try {
+                sendBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+
+    /**
+     * Отправляет пачку одним клиентским потоком: collector отвечает, когда вся пачка записана в Kafka.
+     */
+    private void sendBatch(List<UserActionProto> batch) throws InterruptedException {
+        inFlight.acquire();
+        try {
+            StreamObserver<UserActionProto> stream = asyncStub
+                    .withDeadlineAfter(properties.getDeadlineMs(), TimeUnit.MILLISECONDS)
+                    .collectUserActions(new CompletionObserver(batch.size()));
+            batch.forEach(stream::onNext);
+            stream.onCompleted();
+        } catch (RuntimeException e) {
+            inFlight.release();
+            onFailure(batch.size(), e);
+        }
+    }
+
+    private void onFailure(int actions, Throwable e) {
+        long total = failed.addAndGet(actions);
+        log.warn("Ошибка отправки {} действий в collector, всего не отправлено {}: {}", actions, total, e.getMessage());
+    }
 
+    private UserActionProto toProto(Long userId, Long eventId, ActionTypeProto actionType) {
         Instant instant = Instant.now();
         Timestamp grpcTimestamp = Timestamp.newBuilder()
                 .setSeconds(instant.getEpochSecond())
                 .setNanos(instant.getNano())
                 .build();
-        UserActionProto proto = UserActionProto.newBuilder()
+        return UserActionProto.newBuilder()
                 .setUserId(userId)
                 .setEventId(eventId)
                 .setActionType(actionType)
                 .setTimestamp(grpcTimestamp)
                 .build();
+    }
 
-        try {
-            blockingStub.collectUserAction(proto);
-        } catch (RuntimeException e) {
-            e.printStackTrace();
-            throw new RuntimeException(e);
+    @RequiredArgsConstructor
+    private class CompletionObserver implements StreamObserver<Empty> {
+        final int actions;
+
+        @Override
+        public void onNext(Empty value) {
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            inFlight.release();
+            onFailure(actions, t);
+        }
+
+        @Override
+        public void onCompleted() {
+            inFlight.release();
         }
     }
 }
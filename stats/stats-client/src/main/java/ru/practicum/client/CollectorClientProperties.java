@@ -0,0 +1,38 @@
+package ru.practicum.client;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.FieldDefaults;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "collector.client")
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Getter
+@Setter
+public class CollectorClientProperties {
+    // Отправка в фоне через буфер; false — синхронный вызов в потоке запроса, как раньше
+    boolean async = true;
+    // Максимум действий в буфере, сверх него срабатывает dropPolicy
+    int queueCapacity = 10_000;
+    // Сколько действий фоновый отправитель забирает из буфера и отправляет одним потоком
+    int batchSize = 500;
+    // Сколько отправитель ждёт новых действий, если буфер пуст
+    long lingerMs = 5;
+    // Максимум одновременно отправляемых пачек; при исчерпании отправитель ждёт, а буфер заполняется
+    int maxInFlight = 4;
+    // Дедлайн отправки одной пачки
+    long deadlineMs = 2_000;
+    // Сколько ждать отправки оставшихся действий при остановке
+    long shutdownTimeoutMs = 5_000;
+    DropPolicy dropPolicy = DropPolicy.DROP_NEWEST;
+
+    public enum DropPolicy {
+        // Отбросить новое действие
+        DROP_NEWEST,
+        // Отбросить самое старое действие в буфере и добавить новое
+        DROP_OLDEST
+    }
+}
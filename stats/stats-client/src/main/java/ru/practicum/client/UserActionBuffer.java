@@ -0,0 +1,63 @@
+package ru.practicum.client;
+
+import ru.practicum.client.CollectorClientProperties.DropPolicy;
+import ru.practicum.evm.stats.proto.UserActionProto;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ограниченный буфер действий без блокировок: неблокирующая очередь и атомарный счётчик размера.
+ * Добавление никогда не ждёт: при переполнении действие отбрасывается по {@link DropPolicy}.
+ */
+class UserActionBuffer {
+    private final Queue<UserActionProto> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final int capacity;
+    private final DropPolicy dropPolicy;
+
+    UserActionBuffer(int capacity, DropPolicy dropPolicy) {
+        this.capacity = capacity;
+        this.dropPolicy = dropPolicy;
+    }
+
+    /**
+     * @return false, если ради этого действия пришлось отбросить какое-то действие
+     */
+    boolean offer(UserActionProto action) {
+        if (size.incrementAndGet() <= capacity) {
+            queue.add(action);
+            return true;
+        }
+        if (dropPolicy == DropPolicy.DROP_NEWEST) {
+            size.decrementAndGet();
+            return false;
+        }
+        if (queue.poll() != null) {
+            size.decrementAndGet();
+        }
+        queue.add(action);
+        return false;
+    }
+
+    int drainTo(List<UserActionProto> target, int maxElements) {
+        int drained = 0;
+        UserActionProto action;
+        while (drained < maxElements && (action = queue.poll()) != null) {
+            size.decrementAndGet();
+            target.add(action);
+            drained++;
+        }
+        return drained;
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    boolean isEmpty() {
+        return queue.isEmpty();
+    }
+}
@@ -0,0 +1,39 @@
+package ru.practicum.workload;
+
+import ru.practicum.ewm.stats.avro.ActionTypeAvro;
+
+import java.util.SplittableRandom;
+
+/**
+ * Доли просмотров, регистраций и лайков в потоке действий.
+ * Задаётся строкой «VIEW:REGISTER:LIKE» в относительных единицах, например «70:20:10».
+ */
+public class ActionMix {
+    private final double viewShare;
+    private final double registerShare;
+
+    private ActionMix(double view, double register, double like) {
+        double total = view + register + like;
+        if (view < 0 || register < 0 || like < 0 || total <= 0) {
+            throw new IllegalArgumentException("Доли действий должны быть неотрицательными и не все нулевыми");
+        }
+        this.viewShare = view / total;
+        this.registerShare = register / total;
+    }
+
+    public static ActionMix parse(String mix) {
+        String[] parts = mix.split(":");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Ожидается формат VIEW:REGISTER:LIKE, получено: " + mix);
+        }
+        return new ActionMix(Double.parseDouble(parts[0]), Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+    }
+
+    public ActionTypeAvro sample(SplittableRandom random) {
+        double value = random.nextDouble();
+        if (value < viewShare) {
+            return ActionTypeAvro.VIEW;
+        }
+        return value < viewShare + registerShare ? ActionTypeAvro.REGISTER : ActionTypeAvro.LIKE;
+    }
+}
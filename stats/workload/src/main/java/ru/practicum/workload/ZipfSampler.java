@@ -0,0 +1,37 @@
+package ru.practicum.workload;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Выбирает ранг от 0 до size - 1 с вероятностью, пропорциональной 1 / (ранг + 1)^skew.
+ * При skew = 0 распределение равномерное, при skew около 1 — типичная для популярности мероприятий
+ * и активности пользователей «длинная» кривая, где небольшая доля даёт большую часть действий.
+ */
+public class ZipfSampler {
+    private final double[] cumulative;
+
+    public ZipfSampler(int size, double skew) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Размер распределения должен быть положительным: " + size);
+        }
+        if (skew < 0) {
+            throw new IllegalArgumentException("Параметр skew не может быть отрицательным: " + skew);
+        }
+        cumulative = new double[size];
+        double sum = 0;
+        for (int rank = 0; rank < size; rank++) {
+            sum += 1.0 / Math.pow(rank + 1, skew);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < size; rank++) {
+            cumulative[rank] /= sum;
+        }
+    }
+
+    public int sample(SplittableRandom random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        int rank = index >= 0 ? index : -index - 1;
+        return Math.min(rank, cumulative.length - 1);
+    }
+}